@@ -1,16 +1,34 @@
 package org.altfund.xchangeinterface.xchange.config;
 
 import org.altfund.xchangeinterface.xchange.service.util.ExchangeScale;
+import org.altfund.xchangeinterface.xchange.service.CredentialedExchangePool;
+import org.altfund.xchangeinterface.xchange.service.ExchangeWarmUp;
+import org.altfund.xchangeinterface.xchange.service.BulkTickers;
+import org.altfund.xchangeinterface.xchange.service.CapabilityMatrix;
+import org.altfund.xchangeinterface.xchange.service.CircuitBreakerRegistry;
+import org.altfund.xchangeinterface.xchange.service.ExchangeCatalog;
+import org.altfund.xchangeinterface.xchange.service.MarketDataFetcher;
+import org.altfund.xchangeinterface.xchange.service.MetaDataRefresher;
+import org.altfund.xchangeinterface.xchange.service.MetaDataSnapshotStore;
+import org.altfund.xchangeinterface.xchange.service.OffHeapOrderBookStore;
+import org.altfund.xchangeinterface.xchange.service.OrderBookSubscriptions;
+import org.altfund.xchangeinterface.xchange.service.stream.StreamingOrderBooks;
+import org.altfund.xchangeinterface.xchange.service.RateLimiter;
+import org.altfund.xchangeinterface.xchange.service.TickerFanOut;
 import org.altfund.xchangeinterface.xchange.service.XChangeFactory;
 import org.altfund.xchangeinterface.xchange.service.XChangeFactoryImpl;
 import org.altfund.xchangeinterface.xchange.service.XChangeService;
 import org.altfund.xchangeinterface.xchange.service.XChangeServiceImpl;
 import org.altfund.xchangeinterface.xchange.service.util.LimitOrderPlacer;
+import org.altfund.xchangeinterface.xchange.service.util.ServiceGuard;
+import org.altfund.xchangeinterface.restApi.stream.MarketDataPush;
 import org.altfund.xchangeinterface.restApi.util.ResponseHandler;
 import org.altfund.xchangeinterface.restApi.util.RequestHandler;
 import org.dozer.DozerBeanMapper;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
 import org.altfund.xchangeinterface.restApi.currency.CurrencyController;
 import org.altfund.xchangeinterface.api.balance.BalanceEndpoint;
 import org.altfund.xchangeinterface.util.JsonHelper;
@@ -18,13 +36,26 @@ import org.altfund.xchangeinterface.util.KWayMerge;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.altfund.xchangeinterface.xchange.service.MessageEncryption;
+import java.util.concurrent.TimeUnit;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.altfund.xchangeinterface.config.ApplicationPropertyException;
+import org.altfund.xchangeinterface.xchange.model.Exchange;
 
 /**
  * altfund
  */
 @Configuration
-public class XChangeServiceConfig {
+public class XChangeServiceConfig implements EnvironmentAware {
 
+  private Environment environment;
+
+  @Override
+  public void setEnvironment(Environment environment) {
+    this.environment = environment;
+  }
 
   @Bean
   public ExchangeScale exchangeScale() {
@@ -62,13 +93,111 @@ public class XChangeServiceConfig {
   }
 
   @Bean
-  public XChangeFactory xChangeFactory() {
-    return new XChangeFactoryImpl();
+  public CredentialedExchangePool credentialedExchangePool() {
+    return new CredentialedExchangePool(
+        environment.getProperty("xchange.pool.max-size", Integer.class, 256),
+        TimeUnit.MINUTES.toMillis(environment.getProperty("xchange.pool.idle-ttl-minutes", Long.class, 60L)));
+  }
+
+  @Bean
+  public MetaDataSnapshotStore metaDataSnapshotStore() {
+    return new MetaDataSnapshotStore(Paths.get(environment.getProperty("xchange.metadata.snapshot-dir", "metadata-snapshots")));
+  }
+
+  @Bean
+  public ExchangeCatalog exchangeCatalog() {
+    return new ExchangeCatalog(Arrays.asList(environment.getProperty("xchange.orderbook.l3-exchanges", "gdax").split(",")));
+  }
+
+  @Bean
+  public RateLimiter rateLimiter() {
+    return new RateLimiter(environment);
+  }
+
+  @Bean
+  public CircuitBreakerRegistry circuitBreakerRegistry() {
+    return new CircuitBreakerRegistry(
+        environment.getProperty("xchange.circuit.failure-threshold", Integer.class, 5),
+        TimeUnit.SECONDS.toMillis(environment.getProperty("xchange.circuit.open-seconds", Long.class, 30L)),
+        environment.getProperty("xchange.circuit.half-open-probes", Integer.class, 2),
+        environment.getProperty("xchange.circuit.slow-call-ms", Long.class, 10000L));
+  }
+
+  @Bean
+  public ServiceGuard serviceGuard(RateLimiter rateLimiter, CircuitBreakerRegistry circuitBreakerRegistry) {
+    return new ServiceGuard(rateLimiter, circuitBreakerRegistry);
+  }
+
+  @Bean
+  public XChangeFactory xChangeFactory(ExchangeCatalog exchangeCatalog, CredentialedExchangePool credentialedExchangePool, MetaDataSnapshotStore metaDataSnapshotStore, ServiceGuard serviceGuard) {
+    return new XChangeFactoryImpl(exchangeCatalog, credentialedExchangePool, metaDataSnapshotStore, serviceGuard);
+  }
+
+  @Bean
+  public MetaDataRefresher metaDataRefresher(XChangeFactory xChangeFactory) {
+    return new MetaDataRefresher(
+        xChangeFactory,
+        TimeUnit.MINUTES.toMillis(environment.getProperty("xchange.metadata.refresh-minutes", Long.class, 60L)),
+        environment.getProperty("xchange.metadata.refresh-threads", Integer.class, 2));
+  }
+
+  @Bean
+  public ExchangeWarmUp exchangeWarmUp(XChangeFactory xChangeFactory, ExchangeCatalog exchangeCatalog) {
+    return new ExchangeWarmUp(
+        xChangeFactory,
+        getExchangeList("xchange.warmup.exchanges", exchangeCatalog),
+        environment.getProperty("xchange.warmup.threads", Integer.class, 4),
+        TimeUnit.SECONDS.toMillis(environment.getProperty("xchange.warmup.deadline-seconds", Long.class, 30L)));
   }
 
   @Bean
-  public XChangeService xChangeService(XChangeFactory xChangeFactory, JsonHelper jh, LimitOrderPlacer limitOrderPlacer, DozerBeanMapper dozerBeanMapper, KWayMerge kWayMerge) {
-    return new XChangeServiceImpl(xChangeFactory, jh, limitOrderPlacer, dozerBeanMapper, kWayMerge);
+  public CapabilityMatrix capabilityMatrix(ExchangeCatalog exchangeCatalog) {
+    return new CapabilityMatrix(exchangeCatalog, environment.getProperty("xchange.capabilities.threads", Integer.class, 8));
+  }
+
+  @Bean
+  public BulkTickers bulkTickers(ExchangeCatalog exchangeCatalog) {
+    return new BulkTickers(exchangeCatalog);
+  }
+
+  @Bean
+  public TickerFanOut tickerFanOut(BulkTickers bulkTickers) {
+    return new TickerFanOut(environment, bulkTickers);
+  }
+
+  @Bean
+  public MarketDataFetcher marketDataFetcher(ExchangeCatalog exchangeCatalog, TickerFanOut tickerFanOut) {
+    return new MarketDataFetcher(
+        exchangeCatalog,
+        tickerFanOut,
+        environment.getProperty("xchange.cache.ticker-ttl-ms", Long.class, 1000L),
+        environment.getProperty("xchange.cache.orderbook-ttl-ms", Long.class, 500L),
+        environment.getProperty("xchange.cache.retain-ms", Long.class, 300000L));
+  }
+
+  @Bean
+  public StreamingOrderBooks streamingOrderBooks(XChangeFactory xChangeFactory, ExchangeCatalog exchangeCatalog) {
+    return new StreamingOrderBooks(environment, xChangeFactory, exchangeCatalog);
+  }
+
+  @Bean
+  public OffHeapOrderBookStore offHeapOrderBookStore() {
+    return new OffHeapOrderBookStore(environment);
+  }
+
+  @Bean
+  public OrderBookSubscriptions orderBookSubscriptions(XChangeFactory xChangeFactory, ExchangeCatalog exchangeCatalog, MarketDataFetcher marketDataFetcher, StreamingOrderBooks streamingOrderBooks, OffHeapOrderBookStore offHeapOrderBookStore, ExchangeScale exchangeScale) {
+    return new OrderBookSubscriptions(environment, xChangeFactory, exchangeCatalog, marketDataFetcher, streamingOrderBooks, offHeapOrderBookStore, exchangeScale);
+  }
+
+  @Bean
+  public MarketDataPush marketDataPush(XChangeFactory xChangeFactory, MarketDataFetcher marketDataFetcher, OrderBookSubscriptions orderBookSubscriptions, MessageEncryption messageEncryption, JsonHelper jh) {
+    return new MarketDataPush(environment, xChangeFactory, marketDataFetcher, orderBookSubscriptions, messageEncryption, jh);
+  }
+
+  @Bean
+  public XChangeService xChangeService(XChangeFactory xChangeFactory, JsonHelper jh, LimitOrderPlacer limitOrderPlacer, DozerBeanMapper dozerBeanMapper, KWayMerge kWayMerge, CapabilityMatrix capabilityMatrix, MarketDataFetcher marketDataFetcher, OrderBookSubscriptions orderBookSubscriptions, ExchangeScale exchangeScale) {
+    return new XChangeServiceImpl(xChangeFactory, jh, limitOrderPlacer, dozerBeanMapper, kWayMerge, capabilityMatrix, marketDataFetcher, orderBookSubscriptions, exchangeScale);
   }
 
   @Bean
@@ -91,6 +220,20 @@ public class XChangeServiceConfig {
     return new JsonHelper(jsonNodeFactory, objectMapper);
   }
 
+  /*
+   * Comma separated exchange names or aliases, e.g. POLONIEX,kraken.
+   */
+  private List<Exchange> getExchangeList(String propertyName, ExchangeCatalog exchangeCatalog) {
+    List<Exchange> exchanges = new ArrayList<>();
+    for (String name : environment.getProperty(propertyName, "").split(",")) {
+      if (name.trim().isEmpty()) {
+        continue;
+      }
+      exchanges.add(exchangeCatalog.resolve(name).orElseThrow(() -> new ApplicationPropertyException(propertyName)));
+    }
+    return exchanges;
+  }
+
   //@Bean
   //public TestEndPointController testEndPointController(JsonHelper jh) {
   //  return new TestEndPointController(jh);
@@ -36,7 +36,7 @@ public class IsFeasibleController {
         this.rh = rh;
     }
     @RequestMapping(value = "/isfeasible", produces = "application/json")
-    public ResponseEntity<String> currencyMap(@RequestParam(value="exchange") String exchange) {
+    public ResponseEntity<String> currencyMap(@RequestParam(value="exchange", required=false) String exchange) {
         String response = "";
         try {
             //response = jh.getObjectMapper().writeValueAsString(json);
@@ -0,0 +1,44 @@
+package org.altfund.xchangeinterface.restApi.ready;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.xchange.service.ExchangeWarmUp;
+
+/*
+ * Readiness probe, answered in plain json (not encrypted) so load balancers can read it.
+ * 503 until the configured exchanges are warm or the warm up deadline passed.
+ */
+@Slf4j
+@RestController
+public class ReadyController {
+
+    private final ExchangeWarmUp exchangeWarmUp;
+    private final JsonHelper jh;
+
+    public ReadyController(ExchangeWarmUp exchangeWarmUp, JsonHelper jh) {
+        this.exchangeWarmUp = exchangeWarmUp;
+        this.jh = jh;
+    }
+
+    @RequestMapping(value = "/ready", produces = "application/json")
+    public ResponseEntity<String> ready() {
+        final HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.setContentType(MediaType.APPLICATION_JSON);
+        String response = "";
+        try {
+            response = jh.getObjectMapper().writeValueAsString(exchangeWarmUp.status(jh));
+        } catch (JsonProcessingException ex) {
+            response = "{\"ERROR\":\"JsonProcessingException:" + ex.getMessage() + "\"}";
+        }
+        HttpStatus status = exchangeWarmUp.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return new ResponseEntity<String>(response, httpHeaders, status);
+    }
+}
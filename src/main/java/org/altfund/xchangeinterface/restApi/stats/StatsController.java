@@ -0,0 +1,76 @@
+package org.altfund.xchangeinterface.restApi.stats;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.restApi.stream.MarketDataPush;
+import org.altfund.xchangeinterface.restApi.util.ResponseHandler;
+import org.altfund.xchangeinterface.xchange.service.CircuitBreakerRegistry;
+import org.altfund.xchangeinterface.xchange.service.CredentialedExchangePool;
+import org.altfund.xchangeinterface.xchange.service.MarketDataFetcher;
+import org.altfund.xchangeinterface.xchange.service.OrderBookSubscriptions;
+import org.altfund.xchangeinterface.xchange.service.RateLimiter;
+import org.altfund.xchangeinterface.xchange.service.stream.StreamingOrderBooks;
+
+/*
+ * Runtime metrics of the exchange registry and its caches.
+ */
+@Slf4j
+@RestController
+public class StatsController {
+
+    private final CredentialedExchangePool credentialedExchangePool;
+    private final RateLimiter rateLimiter;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final MarketDataFetcher marketDataFetcher;
+    private final OrderBookSubscriptions orderBookSubscriptions;
+    private final StreamingOrderBooks streamingOrderBooks;
+    private final MarketDataPush marketDataPush;
+    private final ResponseHandler rh;
+    private final JsonHelper jh;
+
+    public StatsController(
+            CredentialedExchangePool credentialedExchangePool,
+            RateLimiter rateLimiter,
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            MarketDataFetcher marketDataFetcher,
+            OrderBookSubscriptions orderBookSubscriptions,
+            StreamingOrderBooks streamingOrderBooks,
+            MarketDataPush marketDataPush,
+            JsonHelper jh,
+            ResponseHandler rh) {
+        this.credentialedExchangePool = credentialedExchangePool;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.marketDataFetcher = marketDataFetcher;
+        this.orderBookSubscriptions = orderBookSubscriptions;
+        this.streamingOrderBooks = streamingOrderBooks;
+        this.marketDataPush = marketDataPush;
+        this.jh = jh;
+        this.rh = rh;
+    }
+
+    @RequestMapping(value = "/stats", produces = "application/json")
+    public ResponseEntity<String> stats() {
+        ObjectNode json = jh.getObjectNode();
+        String response = "";
+        try {
+            json.set("exchange_pool", credentialedExchangePool.stats(jh));
+            json.set("rate_limit", rateLimiter.stats(jh));
+            json.set("circuit_breakers", circuitBreakerRegistry.stats(jh));
+            json.set("market_data_cache", marketDataFetcher.stats(jh));
+            json.set("order_book_subscriptions", orderBookSubscriptions.stats(jh));
+            json.set("order_book_streams", streamingOrderBooks.stats(jh));
+            json.set("push", marketDataPush.stats(jh));
+            response = jh.getObjectMapper().writeValueAsString(json);
+        } catch (JsonProcessingException ex) {
+            return rh.send(ex, true);
+        }
+        return rh.send(response, true);
+    }
+}
@@ -0,0 +1,301 @@
+package org.altfund.xchangeinterface.restApi.stream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.service.marketdata.MarketDataService;
+
+import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.util.Timestamped;
+import org.altfund.xchangeinterface.xchange.service.MarketDataFetcher;
+import org.altfund.xchangeinterface.xchange.service.MessageEncryption;
+import org.altfund.xchangeinterface.xchange.service.OrderBookSubscriptions;
+import org.altfund.xchangeinterface.xchange.service.XChangeFactory;
+import org.altfund.xchangeinterface.xchange.service.exceptions.XChangeServiceException;
+import org.altfund.xchangeinterface.xchange.service.util.ExtractExchangeTickers;
+import org.altfund.xchangeinterface.xchange.service.util.ExtractOrderBooks;
+
+/**
+ * Pushes encrypted ticker and order book updates of one market per client over server-sent
+ * events. Pushing is pull based: every interval-ms each idle client reads the latest state of
+ * its market from memory and is sent what changed since its last event. A client still busy
+ * with its previous events is skipped, so a slow consumer only ever gets the newest state and
+ * nothing queues up behind it.
+ *
+ * Events are prepared on a fixed pool of threads and written by a writer of their own per
+ * client, so a stalled consumer never holds up the others. A client whose write takes longer
+ * than send-timeout-ms is dropped.
+ */
+@Slf4j
+public class MarketDataPush implements InitializingBean, DisposableBean {
+
+    private static final String PREFIX = "xchange.push.";
+
+    private final XChangeFactory xChangeFactory;
+    private final MarketDataFetcher marketDataFetcher;
+    private final OrderBookSubscriptions orderBookSubscriptions;
+    private final MessageEncryption messageEncryption;
+    private final JsonHelper jh;
+
+    private final long intervalMillis;
+    private final long timeoutMillis;
+    private final int maxClients;
+    private final int threads;
+    private final long sendTimeoutMillis;
+
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private ScheduledExecutorService ticker;
+    private ExecutorService senders;
+    private ExecutorService writers;
+
+    private static class Client {
+        private final SseEmitter emitter;
+        private final String exchange;
+        private final CurrencyPair currencyPair;
+        private final boolean tickers;
+        private final boolean orderBooks;
+        private final AtomicBoolean busy = new AtomicBoolean();
+        // fetched_at of the last event sent, only touched while busy.
+        private long tickerSentAt = -1;
+        private long orderBookSentAt = -1;
+        // start of the write in progress (0 for none) and the thread doing it, guarded by the client.
+        private volatile long writingSince;
+        private Thread writer;
+
+        Client(SseEmitter emitter, String exchange, CurrencyPair currencyPair, boolean tickers, boolean orderBooks) {
+            this.emitter = emitter;
+            this.exchange = exchange;
+            this.currencyPair = currencyPair;
+            this.tickers = tickers;
+            this.orderBooks = orderBooks;
+        }
+    }
+
+    public MarketDataPush(
+            PropertyResolver properties,
+            XChangeFactory xChangeFactory,
+            MarketDataFetcher marketDataFetcher,
+            OrderBookSubscriptions orderBookSubscriptions,
+            MessageEncryption messageEncryption,
+            JsonHelper jh) {
+        this.xChangeFactory = xChangeFactory;
+        this.marketDataFetcher = marketDataFetcher;
+        this.orderBookSubscriptions = orderBookSubscriptions;
+        this.messageEncryption = messageEncryption;
+        this.jh = jh;
+        this.intervalMillis = properties.getProperty(PREFIX + "interval-ms", Long.class, 100L);
+        this.timeoutMillis = properties.getProperty(PREFIX + "timeout-ms", Long.class, 1800000L);
+        this.maxClients = properties.getProperty(PREFIX + "max-clients", Integer.class, 200);
+        this.threads = properties.getProperty(PREFIX + "threads", Integer.class, 8);
+        this.sendTimeoutMillis = properties.getProperty(PREFIX + "send-timeout-ms", Long.class, 10000L);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        senders = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "market-data-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // one running write per client, so there are never more writers than clients.
+        writers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "market-data-push-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "market-data-push-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public SseEmitter open(String exchange, CurrencyPair cp, boolean tickers, boolean orderBooks) throws XChangeServiceException {
+        if (clients.size() >= maxClients) {
+            throw new XChangeServiceException("Too many streaming clients, max " + maxClients);
+        }
+        if (orderBooks) {
+            // keeps the book polled (or streamed) for as long as we read it.
+            orderBookSubscriptions.subscribe(exchange, cp, jh);
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Client client = new Client(emitter, exchange, cp, tickers, orderBooks);
+        emitter.onCompletion(() -> clients.remove(client));
+        emitter.onTimeout(() -> clients.remove(client));
+        clients.add(client);
+        log.debug("Streaming {} on {} to a new client, {} connected.", cp, exchange, clients.size());
+        return emitter;
+    }
+
+    public ObjectNode stats(JsonHelper jh) {
+        ObjectNode json = jh.getObjectNode();
+        json.put("clients", clients.size());
+        json.put("sent", sent.sum());
+        json.put("conflated", conflated.sum());
+        return json;
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        for (Client client : clients) {
+            if (!client.busy.compareAndSet(false, true)) {
+                long writingSince = client.writingSince;
+                if (writingSince > 0 && now - writingSince > sendTimeoutMillis) {
+                    drop(client, new TimeoutException("No progress sending for " + (now - writingSince) + " ms"));
+                }
+                else {
+                    conflated.increment();
+                }
+                continue;
+            }
+            try {
+                senders.execute(() -> prepare(client));
+            }
+            catch (RuntimeException ex) {
+                client.busy.set(false);
+            }
+        }
+    }
+
+    /*
+     * Builds the client's events and hands them to a writer, or frees the client if there is
+     * nothing new.
+     */
+    private void prepare(Client client) {
+        List<SseEmitter.SseEventBuilder> events = new ArrayList<>();
+        try {
+            MarketDataService marketDataService = xChangeFactory.getMarketDataService(client.exchange);
+            if (client.tickers) {
+                pushTicker(client, marketDataService, events);
+            }
+            if (client.orderBooks) {
+                pushOrderBook(client, marketDataService, events);
+            }
+        }
+        catch (Exception ex) {
+            log.debug("Push of {} on {} failed: {}", client.currencyPair, client.exchange, ex.getMessage());
+        }
+        if (events.isEmpty()) {
+            client.busy.set(false);
+            return;
+        }
+        try {
+            writers.execute(() -> write(client, events));
+        }
+        catch (RuntimeException ex) {
+            client.busy.set(false);
+        }
+    }
+
+    private void pushTicker(Client client, MarketDataService marketDataService, List<SseEmitter.SseEventBuilder> events) throws Exception {
+        List<CurrencyPair> currencyPairs = Collections.singletonList(client.currencyPair);
+        List<Object> tickers = marketDataFetcher.getTickers(client.exchange, marketDataService, currencyPairs, null);
+        if (!(tickers.get(0) instanceof Timestamped) || ((Timestamped<?>) tickers.get(0)).getFetchedAt() <= client.tickerSentAt) {
+            return;
+        }
+        events.add(event("ticker", ExtractExchangeTickers.toJson(currencyPairs, tickers, client.exchange, jh)));
+        client.tickerSentAt = ((Timestamped<?>) tickers.get(0)).getFetchedAt();
+    }
+
+    private void pushOrderBook(Client client, MarketDataService marketDataService, List<SseEmitter.SseEventBuilder> events) throws Exception {
+        Timestamped<OrderBook> orderBook = orderBookSubscriptions.read(client.exchange, client.currencyPair, null, null);
+        if (orderBook == null) {
+            orderBook = marketDataFetcher.getOrderBook(client.exchange, marketDataService, client.currencyPair, null);
+        }
+        if (orderBook.getFetchedAt() <= client.orderBookSentAt) {
+            return;
+        }
+        Map<String, String> params = new HashMap<>();
+        params.put("exchange", client.exchange);
+        params.put("base_currency", client.currencyPair.base.getCurrencyCode());
+        params.put("quote_currency", client.currencyPair.counter.getCurrencyCode());
+        Timestamped<OrderBook> latest = orderBook;
+        events.add(event("orderbook", ExtractOrderBooks.toJson(() -> latest, params, jh)));
+        client.orderBookSentAt = orderBook.getFetchedAt();
+    }
+
+    private SseEmitter.SseEventBuilder event(String name, ObjectNode json) throws Exception {
+        return SseEmitter.event().name(name).data(messageEncryption.encrypt(jh.getObjectMapper().writeValueAsString(json)));
+    }
+
+    private void write(Client client, List<SseEmitter.SseEventBuilder> events) {
+        synchronized (client) {
+            client.writer = Thread.currentThread();
+        }
+        client.writingSince = System.currentTimeMillis();
+        try {
+            for (SseEmitter.SseEventBuilder event : events) {
+                // blocks while the client is slow, its next ticks are conflated meanwhile.
+                client.emitter.send(event);
+                sent.increment();
+            }
+        }
+        catch (IOException | IllegalStateException ex) {
+            // client went away.
+            drop(client, ex);
+        }
+        finally {
+            client.writingSince = 0;
+            synchronized (client) {
+                client.writer = null;
+            }
+            // clear the interrupt a timed out drop may have left, the thread is pooled.
+            Thread.interrupted();
+            client.busy.set(false);
+        }
+    }
+
+    private void drop(Client client, Exception cause) {
+        if (!clients.remove(client)) {
+            return;
+        }
+        log.debug("Dropping streaming client of {} on {}: {}", client.currencyPair, client.exchange, cause.getMessage());
+        client.emitter.completeWithError(cause);
+        synchronized (client) {
+            if (client.writer != null && client.writer != Thread.currentThread()) {
+                client.writer.interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        if (senders != null) {
+            senders.shutdownNow();
+        }
+        if (writers != null) {
+            writers.shutdownNow();
+        }
+        for (Client client : clients) {
+            client.emitter.complete();
+        }
+    }
+}
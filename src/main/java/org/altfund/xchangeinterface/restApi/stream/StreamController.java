@@ -0,0 +1,65 @@
+package org.altfund.xchangeinterface.restApi.stream;
+
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import org.knowm.xchange.currency.CurrencyPair;
+
+import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.restApi.util.ResponseHandler;
+import org.altfund.xchangeinterface.xchange.model.EncryptedOrder;
+import org.altfund.xchangeinterface.xchange.service.MessageEncryption;
+
+/*
+ * Server-sent events of one market: "ticker" and "orderbook" events carry the encrypted json
+ * /ticker and /orderbook would return, sent whenever it changed. Setup errors are sent as one
+ * encrypted "error" event before the stream closes.
+ */
+@Slf4j
+@RestController
+public class StreamController {
+
+    private final MarketDataPush marketDataPush;
+    private final MessageEncryption messageEncryption;
+    private final ResponseHandler rh;
+    private final JsonHelper jh;
+
+    public StreamController(MarketDataPush marketDataPush, JsonHelper jh, ResponseHandler rh, MessageEncryption messageEncryption) {
+        this.marketDataPush = marketDataPush;
+        this.messageEncryption = messageEncryption;
+        this.jh = jh;
+        this.rh = rh;
+    }
+
+    @RequestMapping(value = "/stream", produces = "text/event-stream")
+    public SseEmitter stream(@RequestParam Map<String, String> params) {
+        try {
+            EncryptedOrder encryptedOrder = jh.getObjectMapper().convertValue(params, EncryptedOrder.class);
+            ObjectReader reader = jh.getObjectMapper().readerFor(Map.class);
+            Map<String, String> args = reader.readValue(messageEncryption.decrypt(encryptedOrder));
+
+            String channels = args.getOrDefault("channels", "ticker,orderbook");
+            return marketDataPush.open(
+                    args.get("exchange"),
+                    new CurrencyPair(args.get("base_currency"), args.get("quote_currency")),
+                    channels.contains("ticker"),
+                    channels.contains("orderbook"));
+        }
+        catch (Exception ex) {
+            SseEmitter emitter = new SseEmitter();
+            try {
+                emitter.send(SseEmitter.event().name("error").data(messageEncryption.encrypt(rh.send(ex))));
+                emitter.complete();
+            }
+            catch (Exception sendEx) {
+                emitter.completeWithError(sendEx);
+            }
+            return emitter;
+        }
+    }
+}
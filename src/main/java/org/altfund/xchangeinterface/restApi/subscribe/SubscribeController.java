@@ -0,0 +1,67 @@
+package org.altfund.xchangeinterface.restApi.subscribe;
+
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.knowm.xchange.currency.CurrencyPair;
+
+import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.restApi.util.ResponseHandler;
+import org.altfund.xchangeinterface.xchange.model.EncryptedOrder;
+import org.altfund.xchangeinterface.xchange.service.MessageEncryption;
+import org.altfund.xchangeinterface.xchange.service.OrderBookSubscriptions;
+import org.altfund.xchangeinterface.xchange.service.exceptions.XChangeServiceException;
+
+/*
+ * Subscribes to the order book of one market, /orderbook then serves it from memory.
+ * Clients renew a subscription by calling again or by reading the book.
+ */
+@Slf4j
+@RestController
+public class SubscribeController {
+
+    private final OrderBookSubscriptions orderBookSubscriptions;
+    private final MessageEncryption messageEncryption;
+    private final ResponseHandler rh;
+    private final JsonHelper jh;
+
+    public SubscribeController(OrderBookSubscriptions orderBookSubscriptions, JsonHelper jh, ResponseHandler rh, MessageEncryption messageEncryption) {
+        this.orderBookSubscriptions = orderBookSubscriptions;
+        this.messageEncryption = messageEncryption;
+        this.jh = jh;
+        this.rh = rh;
+    }
+
+    @RequestMapping(value = "/subscribe", produces = "application/json")
+    public ResponseEntity<String> subscribe(@RequestParam Map<String, String> params) {
+        String response = "";
+        ObjectNode json = null;
+        try {
+            EncryptedOrder encryptedOrder = jh.getObjectMapper().convertValue(params, EncryptedOrder.class);
+            ObjectReader reader = jh.getObjectMapper().readerFor(Map.class);
+            Map<String, String> args = reader.readValue(messageEncryption.decrypt(encryptedOrder));
+
+            try {
+                json = orderBookSubscriptions.subscribe(
+                        args.get("exchange"),
+                        new CurrencyPair(args.get("base_currency"), args.get("quote_currency")),
+                        jh);
+            }
+            catch (XChangeServiceException ex) {
+                json = jh.getObjectNode();
+                json.put("ERROR", ex.getMessage());
+            }
+            response = jh.getObjectMapper().writeValueAsString(json);
+        }
+        catch (Exception ex) {
+            return rh.send(ex, true);
+        }
+        return rh.send(response, true);
+    }
+}
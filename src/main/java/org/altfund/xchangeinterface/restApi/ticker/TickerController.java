@@ -30,10 +30,12 @@ public class TickerController {
     }
 
     @RequestMapping(value = "/ticker", produces = "application/json")
-    public ResponseEntity<String> ticker(@RequestParam(value="exchange") String exchange) {
+    public ResponseEntity<String> ticker(
+            @RequestParam(value="exchange") String exchange,
+            @RequestParam(value="max_age", required=false) Long maxAge) {
         String response = "";
         try {
-            ObjectNode json = xChangeService.getTickers(exchange);
+            ObjectNode json = xChangeService.getTickers(exchange, maxAge);
             response = jh.getObjectMapper().writeValueAsString(json);
         } catch (JsonProcessingException ex) {
             response = "{\"ERROR\":\"JsonProcessinccounts/login/Exception:"+ ex.getMessage() + "\"}";
@@ -0,0 +1,93 @@
+package org.altfund.xchangeinterface.util;
+
+/**
+ * Closed until failureThreshold consecutive failures, then open (every call rejected) for
+ * openMillis. After that it half-opens and lets up to probes calls through; once that many
+ * succeed it closes again, a single failed probe opens it for another openMillis.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final int probes;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    public CircuitBreaker(int failureThreshold, long openMillis, int probes) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.probes = Math.max(1, probes);
+    }
+
+    /*
+     * False if the call must not go out. Every true has to be followed by exactly one of
+     * onSuccess, onFailure or onIgnored.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= probes) {
+                return false;
+            }
+            probesInFlight++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            releaseProbe();
+            if (++probeSuccesses >= probes) {
+                state = State.CLOSED;
+                failures = 0;
+            }
+        }
+        else if (state == State.CLOSED) {
+            failures = 0;
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN || (state == State.CLOSED && ++failures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            failures = 0;
+        }
+    }
+
+    /*
+     * The call did not tell anything about the remote side, e.g. it was rate limited locally.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            releaseProbe();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    private void releaseProbe() {
+        if (probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+}
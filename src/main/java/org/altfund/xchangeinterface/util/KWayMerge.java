@@ -1,99 +1,145 @@
 package org.altfund.xchangeinterface.util;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.PriorityQueue;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import lombok.extern.slf4j.Slf4j;
 
 
-import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.Order;
 import org.knowm.xchange.dto.trade.LimitOrder;
 
+import org.altfund.xchangeinterface.xchange.model.CompactOrderBook;
 import org.altfund.xchangeinterface.xchange.model.LimitOrderExchange;
 
 @Slf4j
 public class KWayMerge {
 
+    // 10^0 to 10^18, every power of ten that fits a long.
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
 
     public KWayMerge() {
     }
 
-    //TODO don't need ArrayList the whole time, normal list would suffice
     public List<LimitOrderExchange> mergeKLists(ArrayList<List<LimitOrder>> newBooks, ArrayList<String> exchanges) {
-        if (newBooks == null || newBooks.size() == 0){
+        return mergeKLists(newBooks, exchanges, null);
+    }
+
+    /*
+     * The best limit orders (all if limit is null) across newBooks, each sorted best price
+     * first, tagged with the exchange at the same index. Orders past limit are never looked at.
+     */
+    public List<LimitOrderExchange> mergeKLists(List<List<LimitOrder>> newBooks, List<String> exchanges, Integer limit) {
+        if (newBooks == null || newBooks.isEmpty()) {
             log.warn("new books null or of size 0");
-            return null;
+            return new ArrayList<LimitOrderExchange>();
         }
 
-        ArrayList<LimitOrderNode> books = new ArrayList<LimitOrderNode>();
-        for (int i = 0; i < newBooks.size(); i++){
-            books.add(new LimitOrderNode(newBooks.get(i), exchanges.get(i)));
-            //log.debug("Adding exchange: {}", newBooks.get(i));
-        }
-
-        PriorityQueue<LimitOrderNode> queue = new PriorityQueue<>(books.size(), new KComparator());
-        LimitOrder order;
-        LimitOrderNode orderList;
-
-        for (int i = 0; i < books.size(); i++) {
-            orderList = books.get(i);
-            if (orderList != null)
-                queue.offer(orderList);
+        List<Iterator<LimitOrder>> sources = new ArrayList<Iterator<LimitOrder>>(newBooks.size());
+        for (List<LimitOrder> book : newBooks) {
+            sources.add(book.iterator());
         }
+        MergeIterator<LimitOrder> merged = new MergeIterator<LimitOrder>(sources, LimitOrder::compareTo);
 
         List<LimitOrderExchange> sorted = new ArrayList<LimitOrderExchange>();
-        LimitOrder lo = null;
-        String exchange = "";
-
-        while (!queue.isEmpty()) {
-            LimitOrderNode node = queue.poll();
-
-            lo = node.getCurrent();
-            exchange = node.getExchange();
-            LimitOrderExchange loe = new LimitOrderExchange(exchange, lo);
-
-            sorted.add(loe);
-
-            if (!node.isEmpty())
-                queue.offer(node.next());
+        while (merged.hasNext() && (limit == null || sorted.size() < limit)) {
+            LimitOrder lo = merged.next();
+            sorted.add(new LimitOrderExchange(exchanges.get(merged.source()), lo));
         }
 
         log.debug("done sorting: {} exchanges", newBooks.size());
         return sorted;
     }
 
-}
+    /*
+     * mergeKLists on one side of compact books, best price first. Prices are compared as
+     * longs, rescaled to the finer of the two scales when books differ, LimitOrders are only
+     * built for the output.
+     */
+    public List<LimitOrderExchange> mergeCompact(List<CompactOrderBook> books, List<String> exchanges, Order.OrderType type, Integer limit) {
+        List<Iterator<CompactLevel>> sources = new ArrayList<Iterator<CompactLevel>>(books.size());
+        for (CompactOrderBook book : books) {
+            sources.add(levels(type == Order.OrderType.ASK ? book.getAsks() : book.getBids(), book.getPriceScale()));
+        }
+        Comparator<CompactLevel> ascending = KWayMerge::compare;
+        MergeIterator<CompactLevel> merged = new MergeIterator<CompactLevel>(
+                sources, type == Order.OrderType.ASK ? ascending : ascending.reversed());
 
-class LimitOrderNode{
-    int index = 0;
-    List<LimitOrder> list;
-    String exchange;
-    public LimitOrderNode(List<LimitOrder> list, String exchange) {
-        this.list = list;
-        this.exchange = exchange;
-    }
-    public LimitOrderNode next() {
-        index = index + 1;
-        return this;
-    }
-    public String getExchange(){
-        return exchange;
-    }
-    public LimitOrder getCurrent(){
-        return list.get(index);
+        List<LimitOrderExchange> sorted = new ArrayList<LimitOrderExchange>();
+        while (merged.hasNext() && (limit == null || sorted.size() < limit)) {
+            CompactLevel level = merged.next();
+            CompactOrderBook book = books.get(merged.source());
+            sorted.add(new LimitOrderExchange(exchanges.get(merged.source()), book.toLimitOrder(level.side, level.index)));
+        }
+        return sorted;
     }
-    public boolean isEmpty() {
-        return list.size() == index + 1;
+
+    /*
+     * One level of a compact side with its scaled price.
+     */
+    private static class CompactLevel {
+        private final CompactOrderBook.Side side;
+        private final int index;
+        private final long price;
+        private final int scale;
+
+        CompactLevel(CompactOrderBook.Side side, int index, long price, int scale) {
+            this.side = side;
+            this.index = index;
+            this.price = price;
+            this.scale = scale;
+        }
     }
-    public int compareTo(LimitOrderNode limitOrderNode) {
-        return getCurrent().compareTo(limitOrderNode.getCurrent());
+
+    private static Iterator<CompactLevel> levels(CompactOrderBook.Side side, int scale) {
+        return new Iterator<CompactLevel>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < side.size();
+            }
+
+            @Override
+            public CompactLevel next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                CompactLevel level = new CompactLevel(side, index, side.getPrice(index), scale);
+                index++;
+                return level;
+            }
+        };
     }
-}
 
-class KComparator implements Comparator<LimitOrderNode> {
-    public int compare(LimitOrderNode L1, LimitOrderNode L2) {
-        return L1.compareTo(L2);
+    /*
+     * Price order of two levels. Falls back to BigDecimal when rescaling would overflow a long.
+     */
+    private static int compare(CompactLevel a, CompactLevel b) {
+        if (a.scale == b.scale) {
+            return Long.compare(a.price, b.price);
+        }
+        int shift = Math.abs(a.scale - b.scale);
+        if (shift < POWERS_OF_TEN.length) {
+            try {
+                return a.scale < b.scale
+                    ? Long.compare(Math.multiplyExact(a.price, POWERS_OF_TEN[shift]), b.price)
+                    : Long.compare(a.price, Math.multiplyExact(b.price, POWERS_OF_TEN[shift]));
+            }
+            catch (ArithmeticException ex) {
+                // out of long range, compared below.
+            }
+        }
+        return BigDecimal.valueOf(a.price, a.scale).compareTo(BigDecimal.valueOf(b.price, b.scale));
     }
 }
@@ -0,0 +1,70 @@
+package org.altfund.xchangeinterface.util;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Lazy k-way merge of iterators that are each sorted by comparator. Only the current head of
+ * every source is held, so taking the first n elements costs O(k + n log k) no matter how long
+ * the sources are. Equal elements come out in source order. Empty sources are fine.
+ */
+public class MergeIterator<T> implements Iterator<T> {
+
+    private final List<? extends Iterator<? extends T>> sources;
+    private final PriorityQueue<Head<T>> heads;
+    private int source = -1;
+
+    private static class Head<T> {
+        private final int source;
+        private final T value;
+
+        Head(int source, T value) {
+            this.source = source;
+            this.value = value;
+        }
+    }
+
+    public MergeIterator(List<? extends Iterator<? extends T>> sources, Comparator<? super T> comparator) {
+        this.sources = sources;
+        this.heads = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> {
+            int order = comparator.compare(a.value, b.value);
+            return order != 0 ? order : Integer.compare(a.source, b.source);
+        });
+        for (int i = 0; i < sources.size(); i++) {
+            advance(i);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        Head<T> head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        source = head.source;
+        advance(source);
+        return head.value;
+    }
+
+    /*
+     * Index in sources of the element last returned by next().
+     */
+    public int source() {
+        return source;
+    }
+
+    private void advance(int i) {
+        Iterator<? extends T> iterator = sources.get(i);
+        if (iterator.hasNext()) {
+            heads.offer(new Head<>(i, iterator.next()));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.altfund.xchangeinterface.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces identical calls that are in flight at the same time. The first caller for a key
+ * leads and runs the call, callers arriving before it finished wait on the leader's future and
+ * get the same value or exception. Nothing is kept once the call completed, unlike
+ * SingleFlightRegistry the next caller for the key starts a new call.
+ *
+ * Callers that fetch several keys in one upstream call lead with join, and must finish every
+ * key they lead with complete or fail.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    public V execute(K key, SingleFlightRegistry.Loader<V> loader) throws Exception {
+        CompletableFuture<V> lead = new CompletableFuture<>();
+        CompletableFuture<V> running = join(key, lead);
+        if (running != null) {
+            return SingleFlightRegistry.await(running);
+        }
+        try {
+            V value = loader.load();
+            complete(key, lead, value);
+            return value;
+        }
+        catch (Exception | Error ex) {
+            fail(key, lead, ex);
+            throw ex;
+        }
+    }
+
+    /*
+     * Future of the call already in flight for key, or null if lead was registered and the
+     * caller now owns the call.
+     */
+    public CompletableFuture<V> join(K key, CompletableFuture<V> lead) {
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, lead);
+        if (running != null) {
+            coalesced.increment();
+        }
+        return running;
+    }
+
+    public void complete(K key, CompletableFuture<V> lead, V value) {
+        inFlight.remove(key, lead);
+        lead.complete(value);
+    }
+
+    public void fail(K key, CompletableFuture<V> lead, Throwable t) {
+        inFlight.remove(key, lead);
+        lead.completeExceptionally(t);
+    }
+
+    public static <V> V await(CompletableFuture<V> future) throws Exception {
+        return SingleFlightRegistry.await(future);
+    }
+
+    public int size() {
+        return inFlight.size();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+}
@@ -0,0 +1,92 @@
+package org.altfund.xchangeinterface.util;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Keyed registry whose values are created exactly once. The first caller for a key runs the
+ * loader, concurrent callers for the same key wait on the same pending future. Reads of an
+ * already initialized key are a plain ConcurrentHashMap lookup and take no locks.
+ *
+ * A failed load is removed again so the next caller retries.
+ */
+public class SingleFlightRegistry<K, V> {
+
+    public interface Loader<V> {
+        V load() throws Exception;
+    }
+
+    private final ConcurrentMap<K, CompletableFuture<V>> entries = new ConcurrentHashMap<>();
+
+    public V get(K key, Loader<V> loader) throws Exception {
+        CompletableFuture<V> future = entries.get(key);
+        if (future == null) {
+            CompletableFuture<V> created = new CompletableFuture<>();
+            future = entries.putIfAbsent(key, created);
+            if (future == null) {
+                future = created;
+                try {
+                    created.complete(loader.load());
+                }
+                catch (Throwable t) {
+                    entries.remove(key, created);
+                    created.completeExceptionally(t);
+                }
+            }
+        }
+        return await(future);
+    }
+
+    /*
+     * Value for key if it finished initializing, null if absent, pending or failed.
+     */
+    public V getIfReady(K key) {
+        CompletableFuture<V> future = entries.get(key);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        return future.join();
+    }
+
+    /*
+     * Replaces the value for key atomically, readers see either the old or the new value.
+     */
+    public void put(K key, V value) {
+        entries.put(key, CompletableFuture.completedFuture(value));
+    }
+
+    public boolean invalidate(K key) {
+        return entries.remove(key) != null;
+    }
+
+    public Set<K> keys() {
+        return entries.keySet();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    static <V> V await(CompletableFuture<V> future) throws Exception {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw ex;
+        }
+        catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ex;
+        }
+    }
+}
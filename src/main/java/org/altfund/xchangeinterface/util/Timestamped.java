@@ -0,0 +1,27 @@
+package org.altfund.xchangeinterface.util;
+
+/**
+ * A value together with the time (epoch millis) it was fetched.
+ */
+public class Timestamped<V> {
+
+    private final V value;
+    private final long fetchedAt;
+
+    public Timestamped(V value, long fetchedAt) {
+        this.value = value;
+        this.fetchedAt = fetchedAt;
+    }
+
+    public V getValue() {
+        return value;
+    }
+
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    public long getAgeMillis() {
+        return System.currentTimeMillis() - fetchedAt;
+    }
+}
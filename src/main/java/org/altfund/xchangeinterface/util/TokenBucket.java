@@ -0,0 +1,45 @@
+package org.altfund.xchangeinterface.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket refilled continuously at permitsPerSecond up to burst tokens. Callers reserve
+ * tokens up front and are told how long to wait for them, so waiting happens outside the lock
+ * and concurrent callers are served in reservation order.
+ */
+public class TokenBucket {
+
+    private final double burst;
+    private final double permitsPerNano;
+
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double permitsPerSecond, double burst) {
+        this.burst = burst;
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /*
+     * Takes permits and returns the nanos until they are actually available, 0 if right away.
+     * Nothing is taken and -1 returned if the wait would exceed maxWaitNanos.
+     */
+    public synchronized long reserve(int permits, long maxWaitNanos) {
+        refill();
+        double missing = permits - tokens;
+        long waitNanos = missing <= 0 ? 0 : (long) Math.ceil(missing / permitsPerNano);
+        if (waitNanos > maxWaitNanos) {
+            return -1;
+        }
+        tokens -= permits;
+        return waitNanos;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+    }
+}
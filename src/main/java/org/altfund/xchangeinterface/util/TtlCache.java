@@ -0,0 +1,69 @@
+package org.altfund.xchangeinterface.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent map of timestamped values. Reads say how old a value they accept, ttlMillis is
+ * the default; entries older than retainMillis are dropped by a sweep that runs at most once
+ * per retainMillis, piggybacked on writes.
+ */
+public class TtlCache<K, V> {
+
+    private final ConcurrentMap<K, Timestamped<V>> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final long retainMillis;
+    private final AtomicLong nextSweep = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public TtlCache(long ttlMillis, long retainMillis) {
+        this.ttlMillis = ttlMillis;
+        this.retainMillis = Math.max(ttlMillis, retainMillis);
+    }
+
+    /*
+     * Entry for key if it is at most maxAgeMillis old (ttl if null), otherwise null.
+     */
+    public Timestamped<V> get(K key, Long maxAgeMillis) {
+        Timestamped<V> entry = entries.get(key);
+        long maxAge = maxAgeMillis == null ? ttlMillis : maxAgeMillis;
+        if (entry != null && entry.getAgeMillis() <= maxAge) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public Timestamped<V> put(K key, V value, long fetchedAt) {
+        Timestamped<V> entry = new Timestamped<>(value, fetchedAt);
+        // never replace a newer value with an older one fetched concurrently.
+        entries.merge(key, entry, (old, fresh) -> fresh.getFetchedAt() >= old.getFetchedAt() ? fresh : old);
+        sweep();
+        return entry;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        long sweepAt = nextSweep.get();
+        if (now >= sweepAt && nextSweep.compareAndSet(sweepAt, now + retainMillis)) {
+            entries.values().removeIf(entry -> now - entry.getFetchedAt() > retainMillis);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.altfund.xchangeinterface.xchange.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order;
+import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.trade.LimitOrder;
+
+/*
+ * Order book with prices and amounts stored as scaled longs, a side's price i is
+ * getPrice(i) / 10^priceScale. Sides are best price first like OrderBook. A level costs 16
+ * bytes instead of a LimitOrder with its BigDecimals, and prices compare as longs. Sides are
+ * parallel arrays (ArraySide) or flyweights over off-heap memory (see OffHeapOrderBookStore),
+ * the latter are only valid inside the store's read. Immutable.
+ */
+public class CompactOrderBook {
+
+  // decimals from() keeps beyond the requested scales, a handful of ticks within one.
+  private static final int MAX_EXTRA_SCALE = 4;
+
+  private final CurrencyPair currencyPair;
+  private final Date timeStamp;
+  private final int priceScale;
+  private final int amountScale;
+  private final Side asks;
+  private final Side bids;
+
+  /*
+   * One side, best price first. ArraySide holds its levels on the heap, other
+   * implementations may read them from elsewhere.
+   */
+  public interface Side {
+
+    Order.OrderType getType();
+
+    int size();
+
+    long getPrice(int i);
+
+    long getAmount(int i);
+
+    /*
+     * The best n levels.
+     */
+    Side head(int n);
+  }
+
+  public static class ArraySide implements Side {
+
+    private final Order.OrderType type;
+    private final long[] prices;
+    private final long[] amounts;
+
+    public ArraySide(Order.OrderType type, long[] prices, long[] amounts) {
+      this.type = type;
+      this.prices = prices;
+      this.amounts = amounts;
+    }
+
+    @Override
+    public Order.OrderType getType() {
+      return type;
+    }
+
+    @Override
+    public int size() {
+      return prices.length;
+    }
+
+    @Override
+    public long getPrice(int i) {
+      return prices[i];
+    }
+
+    @Override
+    public long getAmount(int i) {
+      return amounts[i];
+    }
+
+    @Override
+    public Side head(int n) {
+      if (n >= prices.length) {
+        return this;
+      }
+      return new ArraySide(type, Arrays.copyOf(prices, n), Arrays.copyOf(amounts, n));
+    }
+  }
+
+  public CompactOrderBook(CurrencyPair currencyPair, Date timeStamp, int priceScale, int amountScale, Side asks, Side bids) {
+    this.currencyPair = currencyPair;
+    this.timeStamp = timeStamp;
+    this.priceScale = priceScale;
+    this.amountScale = amountScale;
+    this.asks = asks;
+    this.bids = bids;
+  }
+
+  /*
+   * Converts orderBook using at least minPriceScale and minAmountScale decimals (see
+   * ExchangeScale), up to MAX_EXTRA_SCALE more if the book holds finer values. Anything finer
+   * still is rounded so no level looks better than it is: ask prices up, bid prices and
+   * amounts down. Throws ArithmeticException if a value does not fit a long at that scale.
+   */
+  public static CompactOrderBook from(OrderBook orderBook, CurrencyPair currencyPair, int minPriceScale, int minAmountScale) {
+    int priceScale = Math.max(minPriceScale, 0);
+    int amountScale = Math.max(minAmountScale, 0);
+    int maxPriceScale = priceScale + MAX_EXTRA_SCALE;
+    int maxAmountScale = amountScale + MAX_EXTRA_SCALE;
+    for (List<LimitOrder> side : Arrays.asList(orderBook.getAsks(), orderBook.getBids())) {
+      for (LimitOrder order : side) {
+        priceScale = Math.max(priceScale, order.getLimitPrice().stripTrailingZeros().scale());
+        amountScale = Math.max(amountScale, order.getOriginalAmount().stripTrailingZeros().scale());
+      }
+    }
+    priceScale = Math.min(priceScale, maxPriceScale);
+    amountScale = Math.min(amountScale, maxAmountScale);
+    return new CompactOrderBook(
+        currencyPair,
+        orderBook.getTimeStamp(),
+        priceScale,
+        amountScale,
+        side(orderBook.getAsks(), Order.OrderType.ASK, priceScale, amountScale),
+        side(orderBook.getBids(), Order.OrderType.BID, priceScale, amountScale));
+  }
+
+  private static Side side(List<LimitOrder> orders, Order.OrderType type, int priceScale, int amountScale) {
+    long[] prices = new long[orders.size()];
+    long[] amounts = new long[orders.size()];
+    RoundingMode rounding = type == Order.OrderType.ASK ? RoundingMode.CEILING : RoundingMode.FLOOR;
+    for (int i = 0; i < orders.size(); i++) {
+      prices[i] = orders.get(i).getLimitPrice().setScale(priceScale, rounding).unscaledValue().longValueExact();
+      amounts[i] = orders.get(i).getOriginalAmount().setScale(amountScale, RoundingMode.DOWN).unscaledValue().longValueExact();
+    }
+    return new ArraySide(type, prices, amounts);
+  }
+
+  private static Side copy(Side side) {
+    long[] prices = new long[side.size()];
+    long[] amounts = new long[side.size()];
+    for (int i = 0; i < prices.length; i++) {
+      prices[i] = side.getPrice(i);
+      amounts[i] = side.getAmount(i);
+    }
+    return new ArraySide(side.getType(), prices, amounts);
+  }
+
+  public OrderBook toOrderBook() {
+    return new OrderBook(timeStamp, toLimitOrders(asks), toLimitOrders(bids));
+  }
+
+  public List<LimitOrder> toLimitOrders(Side side) {
+    List<LimitOrder> orders = new ArrayList<>(side.size());
+    for (int i = 0; i < side.size(); i++) {
+      orders.add(toLimitOrder(side, i));
+    }
+    return orders;
+  }
+
+  public LimitOrder toLimitOrder(Side side, int i) {
+    return new LimitOrder(side.getType(), amount(side.getAmount(i)), currencyPair, null, null, price(side.getPrice(i)));
+  }
+
+  public BigDecimal price(long scaledPrice) {
+    return BigDecimal.valueOf(scaledPrice, priceScale);
+  }
+
+  public BigDecimal amount(long scaledAmount) {
+    return BigDecimal.valueOf(scaledAmount, amountScale);
+  }
+
+  /*
+   * price at this book's price scale, rounded as given.
+   */
+  public long scalePrice(BigDecimal price, RoundingMode rounding) {
+    return price.setScale(priceScale, rounding).unscaledValue().longValueExact();
+  }
+
+  /*
+   * This book with both sides on the heap, for keeping a book read from a view.
+   */
+  public CompactOrderBook copy() {
+    return withSides(copy(asks), copy(bids));
+  }
+
+  public CompactOrderBook withSides(Side asks, Side bids) {
+    return new CompactOrderBook(currencyPair, timeStamp, priceScale, amountScale, asks, bids);
+  }
+
+  public CurrencyPair getCurrencyPair() {
+    return currencyPair;
+  }
+
+  public Date getTimeStamp() {
+    return timeStamp;
+  }
+
+  public int getPriceScale() {
+    return priceScale;
+  }
+
+  public int getAmountScale() {
+    return amountScale;
+  }
+
+  public Side getAsks() {
+    return asks;
+  }
+
+  public Side getBids() {
+    return bids;
+  }
+}
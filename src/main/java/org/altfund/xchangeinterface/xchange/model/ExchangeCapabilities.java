@@ -0,0 +1,26 @@
+package org.altfund.xchangeinterface.xchange.model;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Getter;
+
+/*
+ * What an exchange implementation supports, probed once without contacting the exchange.
+ * Param fields hold the interfaces the exchange's default params implement, e.g.
+ * OpenOrdersParamCurrencyPair, so callers know which fields they have to fill in.
+ */
+@Builder
+@Getter
+public class ExchangeCapabilities {
+
+  private Exchange exchange;
+  private boolean available;
+  private boolean marketData;
+  private boolean trade;
+  private boolean account;
+  private List<String> openOrdersParams;
+  private List<String> tradeHistoryParams;
+  private boolean batchOrderQuery;
+  private String error;
+
+}
@@ -0,0 +1,78 @@
+package org.altfund.xchangeinterface.xchange.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import org.knowm.xchange.currency.Currency;
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.meta.CurrencyMetaData;
+import org.knowm.xchange.dto.meta.CurrencyPairMetaData;
+import org.knowm.xchange.dto.meta.ExchangeMetaData;
+import org.knowm.xchange.dto.meta.RateLimit;
+
+/**
+ * Immutable metadata and symbols of an exchange as of fetchedAt (epoch millis). Snapshots are
+ * replaced as a whole, never modified, so readers need no locks. Nothing is shared with the
+ * ExchangeMetaData the snapshot was taken from, getExchangeMetaData() hands out a new copy.
+ */
+@Getter
+public class ExchangeMetaDataSnapshot {
+
+    private final String exchange;
+    private final Map<CurrencyPair, CurrencyPairMetaData> currencyPairs;
+    private final Map<Currency, CurrencyMetaData> currencies;
+    @Getter(AccessLevel.NONE)
+    private final RateLimit[] publicRateLimits;
+    @Getter(AccessLevel.NONE)
+    private final RateLimit[] privateRateLimits;
+    @Getter(AccessLevel.NONE)
+    private final Boolean shareRateLimits;
+    private final List<CurrencyPair> exchangeSymbols;
+    private final long fetchedAt;
+
+    public ExchangeMetaDataSnapshot(String exchange, ExchangeMetaData exchangeMetaData, List<CurrencyPair> exchangeSymbols, long fetchedAt) {
+        this.exchange = exchange;
+        this.currencyPairs = exchangeMetaData.getCurrencyPairs() == null
+            ? Collections.<CurrencyPair, CurrencyPairMetaData>emptyMap()
+            : Collections.unmodifiableMap(new HashMap<>(exchangeMetaData.getCurrencyPairs()));
+        this.currencies = exchangeMetaData.getCurrencies() == null
+            ? Collections.<Currency, CurrencyMetaData>emptyMap()
+            : Collections.unmodifiableMap(new HashMap<>(exchangeMetaData.getCurrencies()));
+        this.publicRateLimits = copy(exchangeMetaData.getPublicRateLimits());
+        this.privateRateLimits = copy(exchangeMetaData.getPrivateRateLimits());
+        this.shareRateLimits = exchangeMetaData.isShareRateLimits();
+        this.exchangeSymbols = exchangeSymbols == null
+            ? Collections.<CurrencyPair>emptyList()
+            : Collections.unmodifiableList(new ArrayList<>(exchangeSymbols));
+        this.fetchedAt = fetchedAt;
+    }
+
+    /*
+     * The snapshot as a new ExchangeMetaData, callers may modify it.
+     */
+    public ExchangeMetaData getExchangeMetaData() {
+        return new ExchangeMetaData(
+            new HashMap<>(currencyPairs),
+            new HashMap<>(currencies),
+            copy(publicRateLimits),
+            copy(privateRateLimits),
+            shareRateLimits);
+    }
+
+    // RateLimit has public, mutable fields.
+    private static RateLimit[] copy(RateLimit[] rateLimits) {
+        if (rateLimits == null) {
+            return null;
+        }
+        RateLimit[] copy = new RateLimit[rateLimits.length];
+        for (int i = 0; i < rateLimits.length; i++) {
+            copy[i] = rateLimits[i] == null ? null : new RateLimit(rateLimits[i].calls, rateLimits[i].timeSpan, rateLimits[i].timeUnit);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,27 @@
+package org.altfund.xchangeinterface.xchange.model;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order;
+
+/*
+ * One price level change from a streaming feed, amount is the new total at price (zero
+ * removes the level). sequence increases by one per update of the currency pair.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class LevelUpdate {
+
+  private final CurrencyPair currencyPair;
+  private final long sequence;
+  private final Order.OrderType side;
+  private final BigDecimal price;
+  private final BigDecimal amount;
+
+}
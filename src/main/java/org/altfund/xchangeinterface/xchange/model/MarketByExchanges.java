@@ -3,6 +3,7 @@ package org.altfund.xchangeinterface.xchange.model;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
 import java.util.List;
 
 @Data
@@ -18,4 +19,24 @@ public class MarketByExchanges {
   @JsonProperty("exchanges")
   private List<String> exchanges;
 
+  // accept cached books up to this old (ms), null for the configured ttl.
+  @JsonProperty("max_age")
+  private Long maxAge;
+
+  // best levels per side to return, null for all.
+  @JsonProperty("depth")
+  private Integer depth;
+
+  // only levels within this percentage of the mid price, null for all.
+  @JsonProperty("price_band")
+  private BigDecimal priceBand;
+
+  // group levels into price buckets of this size (quote currency), null for none.
+  @JsonProperty("bucket")
+  private BigDecimal bucket;
+
+  // group levels into price buckets of this many basis points of the mid price.
+  @JsonProperty("bucket_bps")
+  private BigDecimal bucketBps;
+
 }
@@ -0,0 +1,22 @@
+package org.altfund.xchangeinterface.xchange.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import org.knowm.xchange.currency.CurrencyPair;
+
+/*
+ * One market: a currency pair on an exchange, exchange is the canonical (lower case) name.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@AllArgsConstructor
+public class MarketKey {
+
+  private final String exchange;
+  private final CurrencyPair currencyPair;
+
+}
@@ -20,7 +20,9 @@ public enum OrderStatusTypes {
        UNKNOWN_ERROR(OrderStatusKind.UNKNOWN_ERROR, "UNKNOWN_ERROR"),
        CANCELED(OrderStatusKind.CANCELED, "CANCELED"),
        CANCEL_FAILED(OrderStatusKind.CANCEL_FAILED, "CANCEL_FAILED"),
-       PROCESSING_FAILED(OrderStatusKind.PROCESSING_FAILED, "PROCESSING_FAILED");
+       PROCESSING_FAILED(OrderStatusKind.PROCESSING_FAILED, "PROCESSING_FAILED"),
+       RATE_LIMITED(OrderStatusKind.RATE_LIMITED, "RATE_LIMITED"),
+       CIRCUIT_OPEN(OrderStatusKind.CIRCUIT_OPEN, "CIRCUIT_OPEN");
 
        public enum OrderStatusKind {
            PLACED,
@@ -37,7 +39,9 @@ public enum OrderStatusTypes {
            UNKNOWN_ERROR,
            CANCELED,
            CANCEL_FAILED,
-           PROCESSING_FAILED
+           PROCESSING_FAILED,
+           RATE_LIMITED,
+           CIRCUIT_OPEN
        }
 
     private OrderStatusKind orderStatusKind;
@@ -0,0 +1,68 @@
+package org.altfund.xchangeinterface.xchange.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.marketdata.Ticker;
+import org.knowm.xchange.service.marketdata.MarketDataService;
+
+import org.altfund.xchangeinterface.xchange.service.util.BulkTickerStrategy;
+import org.altfund.xchangeinterface.xchange.service.util.KrakenBulkTickerStrategy;
+import org.altfund.xchangeinterface.xchange.service.util.PoloniexBulkTickerStrategy;
+import org.altfund.xchangeinterface.xchange.service.util.ServiceGuard;
+
+/**
+ * Bulk ticker strategies by canonical exchange name. The single upstream call runs under the
+ * exchange's circuit breaker and rate limit as endpoint "getTickers".
+ */
+@Slf4j
+public class BulkTickers {
+
+    private final ExchangeCatalog exchangeCatalog;
+    private final Map<String, BulkTickerStrategy> strategies = new HashMap<>();
+
+    public BulkTickers(ExchangeCatalog exchangeCatalog) {
+        this.exchangeCatalog = exchangeCatalog;
+        register("poloniex", () -> new PoloniexBulkTickerStrategy());
+        register("kraken", () -> new KrakenBulkTickerStrategy());
+    }
+
+    /*
+     * Strategies reference the module's raw classes, they are only instantiated (and those
+     * classes loaded) if the module is on the classpath.
+     */
+    private void register(String exchange, Supplier<BulkTickerStrategy> strategy) {
+        exchangeCatalog.resolve(exchange)
+            .filter(exchangeCatalog::isAvailable)
+            .ifPresent(e -> strategies.put(exchangeCatalog.canonicalName(exchange), strategy.get()));
+    }
+
+    public boolean supports(String exchange) {
+        return strategies.containsKey(exchangeCatalog.canonicalName(exchange));
+    }
+
+    /*
+     * Tickers of currencyPairs in one call, empty if the exchange has no strategy or the call
+     * failed, the caller falls back to fetching pair by pair.
+     */
+    public Map<CurrencyPair, Ticker> getTickers(String exchange, MarketDataService marketDataService, List<CurrencyPair> currencyPairs) {
+        BulkTickerStrategy strategy = strategies.get(exchangeCatalog.canonicalName(exchange));
+        if (strategy == null || currencyPairs.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        try {
+            return ServiceGuard.call(marketDataService, "getTickers",
+                    raw -> strategy.getTickers((MarketDataService) raw, currencyPairs));
+        }
+        catch (Exception ex) {
+            log.warn("Bulk ticker fetch of {} failed, falling back to fan-out: {}", exchange, ex.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+}
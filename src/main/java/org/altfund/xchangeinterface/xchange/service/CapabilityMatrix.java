@@ -0,0 +1,197 @@
+package org.altfund.xchangeinterface.xchange.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import org.knowm.xchange.ExchangeFactory;
+import org.knowm.xchange.ExchangeSpecification;
+import org.knowm.xchange.service.trade.TradeService;
+
+import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.xchange.model.Exchange;
+import org.altfund.xchangeinterface.xchange.model.ExchangeCapabilities;
+
+/**
+ * Capabilities of every catalogued exchange. Each exchange is instantiated once with
+ * placeholder credentials and without remoteInit, so probing never talks to the exchange;
+ * all exchanges are probed concurrently at startup and the result is kept for the lifetime
+ * of the application.
+ */
+@Slf4j
+public class CapabilityMatrix implements InitializingBean, DisposableBean {
+
+    // valid both as plain text and as base64, some exchanges decode the secret on construction.
+    private static final String PLACEHOLDER_KEY = "AAAAAAAAAAAAAAAAAAAAAA==";
+
+    private final ExchangeCatalog exchangeCatalog;
+    private final int threads;
+
+    private volatile CompletableFuture<Map<Exchange, ExchangeCapabilities>> matrix;
+    private ExecutorService executor;
+
+    public CapabilityMatrix(ExchangeCatalog exchangeCatalog, int threads) {
+        this.exchangeCatalog = exchangeCatalog;
+        this.threads = threads;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "capability-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<CompletableFuture<ExchangeCapabilities>> probes = new ArrayList<>();
+        for (Exchange exchange : Exchange.values()) {
+            probes.add(CompletableFuture.supplyAsync(() -> probe(exchange), executor));
+        }
+        matrix = CompletableFuture
+            .allOf(probes.toArray(new CompletableFuture[0]))
+            .thenApply(done -> {
+                Map<Exchange, ExchangeCapabilities> capabilities = new EnumMap<>(Exchange.class);
+                for (CompletableFuture<ExchangeCapabilities> probe : probes) {
+                    ExchangeCapabilities c = probe.join();
+                    capabilities.put(c.getExchange(), c);
+                }
+                log.info("Probed capabilities of {} exchanges.", capabilities.size());
+                executor.shutdown();
+                return Collections.unmodifiableMap(capabilities);
+            });
+    }
+
+    /*
+     * Blocks only until the startup probe finished, afterwards a map lookup.
+     */
+    public Map<Exchange, ExchangeCapabilities> getAll() {
+        return matrix.join();
+    }
+
+    public Optional<ExchangeCapabilities> get(String exchangeName) {
+        return exchangeCatalog.resolve(exchangeName).map(exchange -> getAll().get(exchange));
+    }
+
+    public ObjectNode toJson(ExchangeCapabilities capabilities, JsonHelper jh) {
+        ObjectNode json = jh.getObjectNode();
+        json.put("available", capabilities.isAvailable());
+        json.put("market_data", capabilities.isMarketData());
+        json.put("trade", capabilities.isTrade());
+        json.put("account", capabilities.isAccount());
+        json.put("batch_order_query", capabilities.isBatchOrderQuery());
+        putList(json, "open_orders_params", capabilities.getOpenOrdersParams());
+        putList(json, "trade_history_params", capabilities.getTradeHistoryParams());
+        if (capabilities.getError() != null) {
+            json.put("ERROR", capabilities.getError());
+        }
+        return json;
+    }
+
+    private void putList(ObjectNode json, String field, List<String> values) {
+        if (values == null) {
+            json.putNull(field);
+            return;
+        }
+        ArrayNode array = json.putArray(field);
+        for (String value : values) {
+            array.add(value);
+        }
+    }
+
+    private ExchangeCapabilities probe(Exchange exchange) {
+        ExchangeCapabilities.ExchangeCapabilitiesBuilder builder = ExchangeCapabilities.builder().exchange(exchange);
+        if (!exchangeCatalog.isAvailable(exchange)) {
+            return builder.available(false).build();
+        }
+        builder.available(true);
+
+        try {
+            ExchangeSpecification exchangeSpecification = new ExchangeSpecification(exchange.getExchangeClassName());
+            exchangeSpecification.setShouldLoadRemoteMetaData(false);
+            exchangeSpecification.setApiKey(PLACEHOLDER_KEY);
+            exchangeSpecification.setSecretKey(PLACEHOLDER_KEY);
+            exchangeSpecification.setExchangeSpecificParametersItem("passphrase", PLACEHOLDER_KEY);
+            org.knowm.xchange.Exchange xChange = ExchangeFactory.INSTANCE.createExchange(exchangeSpecification);
+
+            TradeService tradeService = xChange.getTradeService();
+            builder
+                .marketData(xChange.getMarketDataService() != null)
+                .account(xChange.getAccountService() != null)
+                .trade(tradeService != null);
+
+            if (tradeService != null) {
+                builder
+                    .openOrdersParams(paramTypes(() -> tradeService.createOpenOrdersParams()))
+                    .tradeHistoryParams(paramTypes(() -> tradeService.createTradeHistoryParams()))
+                    .batchOrderQuery(isBatchOrderQuery(tradeService));
+            }
+        }
+        catch (Exception | LinkageError ex) {
+            log.debug("Capability probe of {} failed: {}", exchange, ex.getMessage());
+            builder.error(ex.getClass().getSimpleName() + ": " + ex.getMessage());
+        }
+        return builder.build();
+    }
+
+    private interface ParamsSupplier {
+        Object get() throws Exception;
+    }
+
+    /*
+     * Interfaces implemented by the exchange's default params, null if it has none.
+     */
+    private List<String> paramTypes(ParamsSupplier supplier) {
+        Object params;
+        try {
+            params = supplier.get();
+        }
+        catch (Exception ex) {
+            return null;
+        }
+        if (params == null) {
+            return null;
+        }
+        List<String> types = new ArrayList<>();
+        for (Class<?> type = params.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Class<?> iface : type.getInterfaces()) {
+                if (!types.contains(iface.getSimpleName())) {
+                    types.add(iface.getSimpleName());
+                }
+            }
+        }
+        return types;
+    }
+
+    /*
+     * The TradeService interface declares getOrder(String...), only exchanges that override it
+     * outside the generic base classes can query several orders in one call.
+     */
+    private boolean isBatchOrderQuery(TradeService tradeService) {
+        try {
+            Class<?> declaring = tradeService.getClass().getMethod("getOrder", String[].class).getDeclaringClass();
+            return declaring != TradeService.class && !declaring.getName().startsWith("org.knowm.xchange.service.");
+        }
+        catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.altfund.xchangeinterface.xchange.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.altfund.xchangeinterface.util.CircuitBreaker;
+import org.altfund.xchangeinterface.util.JsonHelper;
+
+/**
+ * One CircuitBreaker per exchange and XChangeDispatcher type, so a broken trade endpoint does
+ * not take market data of the same exchange down with it.
+ */
+@Slf4j
+public class CircuitBreakerRegistry {
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final int probes;
+    private final long slowCallMillis;
+
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public CircuitBreakerRegistry(int failureThreshold, long openMillis, int probes, long slowCallMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.probes = probes;
+        this.slowCallMillis = slowCallMillis;
+    }
+
+    public CircuitBreaker get(String exchange, XChangeDispatcher dispatcher) {
+        return breakers.computeIfAbsent(exchange + "." + dispatcher.name(),
+                key -> new CircuitBreaker(failureThreshold, openMillis, probes));
+    }
+
+    /*
+     * Calls slower than this count as failures even when they succeed.
+     */
+    public long getSlowCallMillis() {
+        return slowCallMillis;
+    }
+
+    public ObjectNode stats(JsonHelper jh) {
+        ObjectNode json = jh.getObjectNode();
+        for (Map.Entry<String, CircuitBreaker> entry : breakers.entrySet()) {
+            ObjectNode breaker = jh.getObjectNode();
+            breaker.put("state", entry.getValue().getState().name());
+            breaker.put("failures", entry.getValue().getFailures());
+            json.set(entry.getKey(), breaker);
+        }
+        return json;
+    }
+}
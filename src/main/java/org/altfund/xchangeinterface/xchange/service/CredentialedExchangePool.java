@@ -0,0 +1,179 @@
+package org.altfund.xchangeinterface.xchange.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.knowm.xchange.ExchangeSpecification;
+
+import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.util.SingleFlightRegistry;
+import org.altfund.xchangeinterface.xchange.model.ExchangeCredentials;
+
+/**
+ * Bounded pool of credentialed exchanges. Entries are keyed by a SHA-256 fingerprint of the
+ * credentials so the secret itself is never held as a map key. The pool evicts the least
+ * recently used entry once max size is exceeded and drops entries idle longer than the TTL,
+ * evicted exchanges have their key material cleared from the specification.
+ */
+@Slf4j
+public class CredentialedExchangePool {
+
+    private static final long SWEEP_INTERVAL_MILLIS = 60 * 1000L;
+
+    private final SingleFlightRegistry<String, org.knowm.xchange.Exchange> exchanges = new SingleFlightRegistry<>();
+    private final ConcurrentMap<String, Long> lastAccess = new ConcurrentHashMap<>();
+    // fingerprints invalidated after an error, the next build must remote init.
+    private final ConcurrentMap<String, Long> stale = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong();
+
+    private final int maxSize;
+    private final long idleTtlMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder idleEvictions = new LongAdder();
+
+    public CredentialedExchangePool(int maxSize, long idleTtlMillis) {
+        this.maxSize = maxSize;
+        this.idleTtlMillis = idleTtlMillis;
+    }
+
+    public org.knowm.xchange.Exchange get(
+            ExchangeCredentials exchangeCredentials,
+            SingleFlightRegistry.Loader<org.knowm.xchange.Exchange> loader) throws Exception {
+        String fingerprint = fingerprint(exchangeCredentials);
+
+        if (lastAccess.put(fingerprint, System.currentTimeMillis()) == null) {
+            misses.increment();
+        }
+        else {
+            hits.increment();
+        }
+
+        org.knowm.xchange.Exchange exchange;
+        try {
+            exchange = exchanges.get(fingerprint, loader);
+        }
+        catch (Exception ex) {
+            lastAccess.remove(fingerprint);
+            throw ex;
+        }
+        evict(fingerprint);
+        return exchange;
+    }
+
+    public boolean invalidate(ExchangeCredentials exchangeCredentials) {
+        String fingerprint = fingerprint(exchangeCredentials);
+        lastAccess.remove(fingerprint);
+        org.knowm.xchange.Exchange exchange = exchanges.getIfReady(fingerprint);
+        if (exchanges.invalidate(fingerprint)) {
+            stale.put(fingerprint, System.currentTimeMillis());
+            clearKeyMaterial(exchange);
+            return true;
+        }
+        return false;
+    }
+
+    /*
+     * True once after invalidate(exchangeCredentials), the caller should do a full remoteInit.
+     */
+    public boolean takeStale(ExchangeCredentials exchangeCredentials) {
+        return stale.remove(fingerprint(exchangeCredentials)) != null;
+    }
+
+    public ObjectNode stats(JsonHelper jh) {
+        ObjectNode json = jh.getObjectNode();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        json.put("size", exchanges.size());
+        json.put("max_size", maxSize);
+        json.put("idle_ttl_ms", idleTtlMillis);
+        json.put("hits", hitCount);
+        json.put("misses", missCount);
+        json.put("hit_rate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        json.put("evictions_size", sizeEvictions.sum());
+        json.put("evictions_idle", idleEvictions.sum());
+        return json;
+    }
+
+    private void evict(String current) {
+        long now = System.currentTimeMillis();
+        long sweepAt = nextSweep.get();
+        if (now >= sweepAt && nextSweep.compareAndSet(sweepAt, now + SWEEP_INTERVAL_MILLIS)) {
+            for (Map.Entry<String, Long> entry : lastAccess.entrySet()) {
+                if (now - entry.getValue() > idleTtlMillis && remove(entry.getKey())) {
+                    idleEvictions.increment();
+                }
+            }
+            stale.entrySet().removeIf(entry -> now - entry.getValue() > idleTtlMillis);
+        }
+
+        while (lastAccess.size() > maxSize) {
+            String oldest = null;
+            long oldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<String, Long> entry : lastAccess.entrySet()) {
+                if (!entry.getKey().equals(current) && entry.getValue() < oldestAccess) {
+                    oldest = entry.getKey();
+                    oldestAccess = entry.getValue();
+                }
+            }
+            if (oldest == null) {
+                break;
+            }
+            if (remove(oldest)) {
+                sizeEvictions.increment();
+            }
+        }
+    }
+
+    private boolean remove(String fingerprint) {
+        if (lastAccess.remove(fingerprint) == null) {
+            return false;
+        }
+        org.knowm.xchange.Exchange exchange = exchanges.getIfReady(fingerprint);
+        exchanges.invalidate(fingerprint);
+        clearKeyMaterial(exchange);
+        log.debug("Evicted credentialed exchange {}.", exchange == null ? "pending" : exchange.getExchangeSpecification().getExchangeName());
+        return true;
+    }
+
+    private void clearKeyMaterial(org.knowm.xchange.Exchange exchange) {
+        if (exchange == null || exchange.getExchangeSpecification() == null) {
+            return;
+        }
+        ExchangeSpecification exchangeSpecification = exchange.getExchangeSpecification();
+        exchangeSpecification.setApiKey(null);
+        exchangeSpecification.setSecretKey(null);
+        exchangeSpecification.setPassword(null);
+        exchangeSpecification.setExchangeSpecificParametersItem("passphrase", null);
+    }
+
+    private static String fingerprint(ExchangeCredentials exchangeCredentials) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String material = exchangeCredentials.getExchange() + '\u0000'
+                + exchangeCredentials.getKey() + '\u0000'
+                + exchangeCredentials.getSecret() + '\u0000'
+                + exchangeCredentials.getPassphrase();
+            byte[] hash = digest.digest(material.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.altfund.xchangeinterface.xchange.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.altfund.xchangeinterface.xchange.model.Exchange;
+
+/**
+ * Precomputed name to Exchange lookup. Every entry is reachable by its enum name, its xchange
+ * module package ("gdax", "bitfinex") and its class name without the Exchange suffix, all
+ * lower case.
+ *
+ * Which modules are on the classpath is checked once by resource lookup, the exchange classes
+ * themselves are only loaded by ExchangeFactory the first time an exchange is used.
+ *
+ * Exchanges whose order books list every order (L3) instead of price levels are configured
+ * through xchange.orderbook.l3-exchanges, their books get squashed by price.
+ */
+@Slf4j
+public class ExchangeCatalog {
+
+    private static final String XCHANGE_PACKAGE = "org.knowm.xchange.";
+
+    private final Map<String, Exchange> byName;
+    private final Set<Exchange> available;
+    private final Set<Exchange> perOrderBooks;
+
+    public ExchangeCatalog() {
+        this(Collections.singletonList("gdax"));
+    }
+
+    public ExchangeCatalog(Collection<String> perOrderBookExchanges) {
+        Map<String, Exchange> names = new HashMap<>();
+        Set<Exchange> present = EnumSet.noneOf(Exchange.class);
+        ClassLoader classLoader = ExchangeCatalog.class.getClassLoader();
+
+        for (Exchange exchange : Exchange.values()) {
+            String className = exchange.getExchangeClassName();
+            register(names, exchange.name(), exchange);
+
+            String simpleName = className.substring(className.lastIndexOf('.') + 1);
+            register(names, simpleName.replaceAll("(Exchange|Wallet)$", ""), exchange);
+
+            if (className.startsWith(XCHANGE_PACKAGE)) {
+                String module = className.substring(XCHANGE_PACKAGE.length());
+                register(names, module.substring(0, module.indexOf('.')), exchange);
+            }
+
+            if (classLoader.getResource(className.replace('.', '/') + ".class") != null) {
+                present.add(exchange);
+            }
+        }
+        this.byName = Collections.unmodifiableMap(names);
+        this.available = Collections.unmodifiableSet(present);
+        log.info("{} of {} exchange modules on the classpath: {}", available.size(), Exchange.values().length, available);
+
+        Set<Exchange> perOrder = EnumSet.noneOf(Exchange.class);
+        for (String name : perOrderBookExchanges) {
+            if (name.trim().isEmpty()) {
+                continue;
+            }
+            Exchange exchange = byName.get(name.trim().toLowerCase());
+            if (exchange == null) {
+                log.warn("Unknown exchange {} in xchange.orderbook.l3-exchanges.", name);
+            }
+            else {
+                perOrder.add(exchange);
+            }
+        }
+        this.perOrderBooks = Collections.unmodifiableSet(perOrder);
+    }
+
+    private static void register(Map<String, Exchange> names, String name, Exchange exchange) {
+        Exchange previous = names.putIfAbsent(name.toLowerCase(), exchange);
+        if (previous != null && previous != exchange) {
+            log.warn("Exchange alias {} is ambiguous, keeping {} over {}.", name, previous, exchange);
+        }
+    }
+
+    public Optional<Exchange> resolve(String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(byName.get(name.trim().toLowerCase()));
+    }
+
+    /*
+     * Lower case enum name for any known alias, used as the registry and snapshot key so
+     * "GDAX", "gdax" and "GDAXExchange" share one instance. Unknown names are returned as is.
+     */
+    public String canonicalName(String name) {
+        return resolve(name).map(exchange -> exchange.name().toLowerCase()).orElse(name);
+    }
+
+    /*
+     * True if name returns one entry per order rather than per price level.
+     */
+    public boolean isPerOrderBook(String name) {
+        return resolve(name).map(perOrderBooks::contains).orElse(false);
+    }
+
+    public boolean isAvailable(Exchange exchange) {
+        return available.contains(exchange);
+    }
+
+    public Set<Exchange> getAvailable() {
+        return available;
+    }
+}
@@ -0,0 +1,109 @@
+package org.altfund.xchangeinterface.xchange.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.xchange.model.Exchange;
+
+/**
+ * Creates and remote inits the public instances of the configured exchanges in parallel on a
+ * bounded pool when the application starts, so the first request does not pay for it.
+ * The service reports ready once every configured exchange finished (or failed) or once the
+ * deadline passed, whichever comes first.
+ */
+@Slf4j
+public class ExchangeWarmUp implements InitializingBean, DisposableBean {
+
+    private final XChangeFactory xChangeFactory;
+    private final List<Exchange> exchanges;
+    private final int threads;
+    private final long deadlineMillis;
+
+    private final Map<String, Long> initMillis = new ConcurrentHashMap<>();
+    private final Map<String, String> failures = new ConcurrentHashMap<>();
+    private volatile CountDownLatch pending = new CountDownLatch(0);
+    private volatile long startedAt;
+    private ExecutorService executor;
+
+    public ExchangeWarmUp(XChangeFactory xChangeFactory, List<Exchange> exchanges, int threads, long deadlineMillis) {
+        this.xChangeFactory = xChangeFactory;
+        this.exchanges = exchanges;
+        this.threads = threads;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        startedAt = System.currentTimeMillis();
+        if (exchanges.isEmpty()) {
+            return;
+        }
+
+        log.info("Warming up {} exchanges on {} threads.", exchanges.size(), threads);
+        pending = new CountDownLatch(exchanges.size());
+        executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, exchanges.size())), runnable -> {
+            Thread thread = new Thread(runnable, "exchange-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (Exchange exchange : exchanges) {
+            String exchangeName = exchange.name().toLowerCase();
+            executor.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    xChangeFactory.getExchange(exchangeName);
+                    initMillis.put(exchangeName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    log.info("Warmed up {} in {} ms.", exchangeName, initMillis.get(exchangeName));
+                }
+                catch (Exception ex) {
+                    failures.put(exchangeName, String.valueOf(ex.getMessage()));
+                    log.warn("Warm up of {} failed: {}", exchangeName, ex.getMessage());
+                }
+                finally {
+                    pending.countDown();
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    public boolean isReady() {
+        return pending.getCount() == 0 || System.currentTimeMillis() - startedAt >= deadlineMillis;
+    }
+
+    public ObjectNode status(JsonHelper jh) {
+        ObjectNode json = jh.getObjectNode();
+        ObjectNode times = jh.getObjectNode();
+        ObjectNode errors = jh.getObjectNode();
+        for (Map.Entry<String, Long> entry : initMillis.entrySet()) {
+            times.put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, String> entry : failures.entrySet()) {
+            errors.put(entry.getKey(), entry.getValue());
+        }
+        json.put("ready", isReady());
+        json.put("pending", pending.getCount());
+        json.set("init_ms", times);
+        json.set("failed", errors);
+        return json;
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
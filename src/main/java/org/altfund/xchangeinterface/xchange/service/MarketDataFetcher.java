@@ -0,0 +1,212 @@
+package org.altfund.xchangeinterface.xchange.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.marketdata.Ticker;
+import org.knowm.xchange.service.marketdata.MarketDataService;
+
+import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.util.SingleFlight;
+import org.altfund.xchangeinterface.util.Timestamped;
+import org.altfund.xchangeinterface.util.TtlCache;
+import org.altfund.xchangeinterface.xchange.model.MarketKey;
+import org.altfund.xchangeinterface.xchange.service.util.ExtractOrderBooks;
+import org.altfund.xchangeinterface.xchange.service.util.OrderBookDepthHints;
+
+/**
+ * Cached market data. Tickers and order books are kept per (exchange, currency pair) and
+ * served while they are younger than the caller's max age (the configured ttl by default),
+ * only missing or stale entries go upstream. Failures are never cached.
+ *
+ * Misses for the same market that arrive while a fetch is in flight wait for that fetch
+ * instead of calling the exchange again, one SingleFlight per kind of market data.
+ */
+@Slf4j
+public class MarketDataFetcher {
+
+    private final ExchangeCatalog exchangeCatalog;
+    private final TickerFanOut tickerFanOut;
+    private final TtlCache<MarketKey, Ticker> tickers;
+    private final TtlCache<DepthKey, OrderBook> orderBooks;
+    private final SingleFlight<MarketKey, Timestamped<Ticker>> tickerFlights = new SingleFlight<>();
+    private final SingleFlight<DepthKey, Timestamped<OrderBook>> orderBookFlights = new SingleFlight<>();
+
+    /*
+     * Order books are cached per market and the number of levels requested upstream.
+     */
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class DepthKey {
+        private final MarketKey market;
+        private final Integer levels;
+    }
+
+    public MarketDataFetcher(
+            ExchangeCatalog exchangeCatalog,
+            TickerFanOut tickerFanOut,
+            long tickerTtlMillis,
+            long orderBookTtlMillis,
+            long retainMillis) {
+        this.exchangeCatalog = exchangeCatalog;
+        this.tickerFanOut = tickerFanOut;
+        this.tickers = new TtlCache<>(tickerTtlMillis, retainMillis);
+        this.orderBooks = new TtlCache<>(orderBookTtlMillis, retainMillis);
+    }
+
+    /*
+     * Order book of cp on exchange, no older than maxAgeMillis (the order book ttl if null).
+     */
+    public Timestamped<OrderBook> getOrderBook(String exchange, MarketDataService marketDataService, CurrencyPair cp, Long maxAgeMillis) throws Exception {
+        return getOrderBook(exchange, marketDataService, cp, maxAgeMillis, null);
+    }
+
+    /*
+     * As above, with at least the best depth levels per side if depth is not null. The
+     * exchange is asked for fewer levels where OrderBookDepthHints knows how.
+     */
+    public Timestamped<OrderBook> getOrderBook(String exchange, MarketDataService marketDataService, CurrencyPair cp, Long maxAgeMillis, Integer depth) throws Exception {
+        String exchangeName = exchangeCatalog.canonicalName(exchange);
+        Integer levels = OrderBookDepthHints.levels(exchangeName, depth);
+        DepthKey key = new DepthKey(new MarketKey(exchangeName, cp), levels);
+        Timestamped<OrderBook> cached = orderBooks.get(key, maxAgeMillis);
+        if (cached != null) {
+            return cached;
+        }
+        if (levels != null) {
+            // a fresh full book answers any depth.
+            cached = orderBooks.get(new DepthKey(key.market, null), maxAgeMillis);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return orderBookFlights.execute(key, () -> {
+            OrderBook orderBook = ExtractOrderBooks.raw(marketDataService, cp, exchangeName, levels, exchangeCatalog.isPerOrderBook(exchangeName));
+            return orderBooks.put(key, orderBook, System.currentTimeMillis());
+        });
+    }
+
+    /*
+     * Fresh order book of cp on exchange that is not kept in the cache, for callers that store
+     * it themselves. Shares in-flight fetches with getOrderBook.
+     */
+    public Timestamped<OrderBook> fetchOrderBook(String exchange, MarketDataService marketDataService, CurrencyPair cp) throws Exception {
+        String exchangeName = exchangeCatalog.canonicalName(exchange);
+        return orderBookFlights.execute(new DepthKey(new MarketKey(exchangeName, cp), null), () -> new Timestamped<>(
+                ExtractOrderBooks.raw(marketDataService, cp, exchangeName, null, exchangeCatalog.isPerOrderBook(exchangeName)),
+                System.currentTimeMillis()));
+    }
+
+    /*
+     * Timestamped ticker or the Exception it failed with for every pair, in the order of
+     * currencyPairs.
+     */
+    public List<Object> getTickers(String exchange, MarketDataService marketDataService, List<CurrencyPair> currencyPairs, Long maxAgeMillis) {
+        String exchangeName = exchangeCatalog.canonicalName(exchange);
+        List<Object> results = new ArrayList<>(currencyPairs.size());
+        List<CurrencyPair> missing = new ArrayList<>();
+        for (CurrencyPair cp : currencyPairs) {
+            Timestamped<Ticker> cached = tickers.get(new MarketKey(exchangeName, cp), maxAgeMillis);
+            results.add(cached);
+            if (cached == null) {
+                missing.add(cp);
+            }
+        }
+        if (missing.isEmpty()) {
+            return results;
+        }
+
+        // lead the pairs nobody else is fetching, wait for the rest.
+        Map<Integer, CompletableFuture<Timestamped<Ticker>>> leading = new HashMap<>();
+        Map<Integer, CompletableFuture<Timestamped<Ticker>>> following = new HashMap<>();
+        List<CurrencyPair> fetch = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) != null) {
+                continue;
+            }
+            CompletableFuture<Timestamped<Ticker>> lead = new CompletableFuture<>();
+            CompletableFuture<Timestamped<Ticker>> running = tickerFlights.join(new MarketKey(exchangeName, currencyPairs.get(i)), lead);
+            if (running == null) {
+                leading.put(i, lead);
+                fetch.add(currencyPairs.get(i));
+            }
+            else {
+                following.put(i, running);
+            }
+        }
+
+        log.debug("{} of {} tickers of {} not cached, {} already in flight.", missing.size(), currencyPairs.size(), exchangeName, following.size());
+        try {
+            List<Object> fetched = fetch.isEmpty() ? new ArrayList<>() : tickerFanOut.fetch(exchange, marketDataService, fetch);
+            long fetchedAt = System.currentTimeMillis();
+            int m = 0;
+            for (int i = 0; i < results.size(); i++) {
+                CompletableFuture<Timestamped<Ticker>> lead = leading.get(i);
+                if (lead == null) {
+                    continue;
+                }
+                MarketKey key = new MarketKey(exchangeName, currencyPairs.get(i));
+                Object result = fetched.get(m++);
+                if (result instanceof Ticker) {
+                    Timestamped<Ticker> ticker = tickers.put(key, (Ticker) result, fetchedAt);
+                    tickerFlights.complete(key, lead, ticker);
+                    results.set(i, ticker);
+                }
+                else {
+                    tickerFlights.fail(key, lead, (Exception) result);
+                    results.set(i, result);
+                }
+            }
+        }
+        finally {
+            // never leave followers waiting on a lead we did not finish.
+            for (Map.Entry<Integer, CompletableFuture<Timestamped<Ticker>>> entry : leading.entrySet()) {
+                if (!entry.getValue().isDone()) {
+                    tickerFlights.fail(
+                            new MarketKey(exchangeName, currencyPairs.get(entry.getKey())),
+                            entry.getValue(),
+                            new IllegalStateException("Ticker fetch aborted"));
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, CompletableFuture<Timestamped<Ticker>>> entry : following.entrySet()) {
+            try {
+                results.set(entry.getKey(), SingleFlight.await(entry.getValue()));
+            }
+            catch (Exception ex) {
+                results.set(entry.getKey(), ex);
+            }
+        }
+        return results;
+    }
+
+    public ObjectNode stats(JsonHelper jh) {
+        ObjectNode json = jh.getObjectNode();
+        ObjectNode ticker = jh.getObjectNode();
+        ticker.put("size", tickers.size());
+        ticker.put("hits", tickers.getHits());
+        ticker.put("misses", tickers.getMisses());
+        ticker.put("in_flight", tickerFlights.size());
+        ticker.put("coalesced", tickerFlights.getCoalesced());
+        json.set("tickers", ticker);
+        ObjectNode orderBook = jh.getObjectNode();
+        orderBook.put("size", orderBooks.size());
+        orderBook.put("hits", orderBooks.getHits());
+        orderBook.put("misses", orderBooks.getMisses());
+        orderBook.put("in_flight", orderBookFlights.size());
+        orderBook.put("coalesced", orderBookFlights.getCoalesced());
+        json.set("order_books", orderBook);
+        return json;
+    }
+}
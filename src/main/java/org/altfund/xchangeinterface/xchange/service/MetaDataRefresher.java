@@ -0,0 +1,76 @@
+package org.altfund.xchangeinterface.xchange.service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Re-pulls the metadata of every exchange in use on a fixed interval. Every exchange gets its
+ * own periodic task once the factory has a live instance of it, exchanges only known from a
+ * persisted snapshot are left alone. The factory diffs the result and publishes a new
+ * immutable snapshot only when something changed.
+ */
+@Slf4j
+public class MetaDataRefresher implements InitializingBean, DisposableBean {
+
+    private static final long DISCOVERY_INTERVAL_SECONDS = 60;
+
+    private final XChangeFactory xChangeFactory;
+    private final long refreshMillis;
+    private final int threads;
+
+    private final Set<String> scheduled = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+
+    public MetaDataRefresher(XChangeFactory xChangeFactory, long refreshMillis, int threads) {
+        this.xChangeFactory = xChangeFactory;
+        this.refreshMillis = refreshMillis;
+        this.threads = threads;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (refreshMillis <= 0) {
+            log.info("Metadata refresh disabled.");
+            return;
+        }
+        scheduler = Executors.newScheduledThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "metadata-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::discover, 0, DISCOVERY_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void discover() {
+        for (String exchange : xChangeFactory.getInitializedExchanges()) {
+            if (scheduled.add(exchange)) {
+                log.debug("Scheduling metadata refresh of {} every {} ms.", exchange, refreshMillis);
+                scheduler.scheduleWithFixedDelay(() -> refresh(exchange), refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void refresh(String exchange) {
+        try {
+            xChangeFactory.refreshExchangeMetaData(exchange);
+        }
+        catch (Exception ex) {
+            // keep serving the current snapshot, retry on the next tick.
+            log.warn("Metadata refresh of {} failed: {}", exchange, ex.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
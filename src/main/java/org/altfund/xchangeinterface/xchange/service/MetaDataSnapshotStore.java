@@ -0,0 +1,118 @@
+package org.altfund.xchangeinterface.xchange.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.InitializingBean;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.meta.ExchangeMetaData;
+
+import org.altfund.xchangeinterface.xchange.model.ExchangeMetaDataSnapshot;
+
+/**
+ * Keeps the last known ExchangeMetaData and exchange symbols of every exchange in one json
+ * file per exchange. Snapshots are loaded at boot so metadata lookups can be answered before
+ * the live exchange finished its remoteInit.
+ *
+ * Published snapshots are immutable and replaced with a single map put, readers always see a
+ * complete snapshot without taking locks.
+ */
+@Slf4j
+public class MetaDataSnapshotStore implements InitializingBean {
+
+    private final Path directory;
+    // own mapper, the shared one gets mixins added at runtime.
+    private final ObjectMapper mapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final ConcurrentMap<String, ExchangeMetaDataSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    public MetaDataSnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!Files.isDirectory(directory)) {
+            log.info("No metadata snapshots in {}.", directory.toAbsolutePath());
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.json")) {
+            for (Path file : files) {
+                try {
+                    ExchangeMetaDataSnapshot snapshot = read(mapper.readTree(file.toFile()));
+                    snapshots.put(snapshot.getExchange(), snapshot);
+                    log.info("Loaded metadata snapshot of {} from {}.", snapshot.getExchange(), snapshot.getFetchedAt());
+                }
+                catch (IOException | RuntimeException ex) {
+                    log.warn("Skipping unreadable metadata snapshot {}: {}", file, ex.getMessage());
+                }
+            }
+        }
+        catch (IOException ex) {
+            log.warn("Could not list metadata snapshots in {}: {}", directory, ex.getMessage());
+        }
+    }
+
+    public ExchangeMetaDataSnapshot get(String exchange) {
+        return snapshots.get(exchange);
+    }
+
+    public ExchangeMetaDataSnapshot save(String exchange, org.knowm.xchange.Exchange xChange) {
+        ExchangeMetaDataSnapshot snapshot = new ExchangeMetaDataSnapshot(
+                exchange,
+                xChange.getExchangeMetaData(),
+                xChange.getExchangeSymbols(),
+                System.currentTimeMillis());
+        snapshots.put(exchange, snapshot);
+        write(snapshot);
+        return snapshot;
+    }
+
+    private void write(ExchangeMetaDataSnapshot snapshot) {
+        ObjectNode json = mapper.createObjectNode();
+        ArrayNode symbols = json.putArray("exchange_symbols");
+        for (CurrencyPair cp : snapshot.getExchangeSymbols()) {
+            symbols.add(cp.toString());
+        }
+        json.put("exchange", snapshot.getExchange());
+        json.put("fetched_at", snapshot.getFetchedAt());
+        json.set("exchange_meta_data", mapper.valueToTree(snapshot.getExchangeMetaData()));
+
+        try {
+            Files.createDirectories(directory);
+            Path target = directory.resolve(snapshot.getExchange() + ".json");
+            Path tmp = Files.createTempFile(directory, snapshot.getExchange(), ".tmp");
+            mapper.writeValue(tmp.toFile(), json);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException | RuntimeException ex) {
+            log.warn("Could not persist metadata snapshot of {}: {}", snapshot.getExchange(), ex.getMessage());
+        }
+    }
+
+    private ExchangeMetaDataSnapshot read(JsonNode json) throws IOException {
+        List<CurrencyPair> symbols = new ArrayList<>();
+        for (JsonNode symbol : json.path("exchange_symbols")) {
+            symbols.add(new CurrencyPair(symbol.asText()));
+        }
+        return new ExchangeMetaDataSnapshot(
+                json.get("exchange").asText(),
+                mapper.treeToValue(json.get("exchange_meta_data"), ExchangeMetaData.class),
+                symbols,
+                json.path("fetched_at").asLong());
+    }
+}
@@ -0,0 +1,278 @@
+package org.altfund.xchangeinterface.xchange.service;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.core.env.PropertyResolver;
+
+import org.knowm.xchange.dto.Order;
+
+import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.util.Timestamped;
+import org.altfund.xchangeinterface.xchange.model.CompactOrderBook;
+import org.altfund.xchangeinterface.xchange.model.MarketKey;
+
+/**
+ * Order books of tracked markets kept in direct (off-heap) memory, so the heap does not grow
+ * with the number of markets followed. Every market gets a fixed size slot with its scales,
+ * fetch time and up to xchange.offheap.levels levels per side as scaled longs, deeper levels
+ * are dropped. Slots are cut from direct buffers of xchange.offheap.slots-per-chunk slots
+ * and reused once their market is removed.
+ *
+ * Each market has one writer (its poller) and any number of readers. Readers get a flyweight
+ * CompactOrderBook over the slot: they run optimistically and once more under the slot's read
+ * lock if a write overlapped, so reader functions must be free of side effects and must not
+ * keep the view, or anything backed by it, past their return.
+ */
+@Slf4j
+public class OffHeapOrderBookStore {
+
+    private static final String PREFIX = "xchange.offheap.";
+
+    // fetchedAt, timeStamp (-1 for none), priceScale, amountScale, ask count, bid count.
+    private static final int FETCHED_AT = 0;
+    private static final int TIME_STAMP = 8;
+    private static final int PRICE_SCALE = 16;
+    private static final int AMOUNT_SCALE = 20;
+    private static final int ASK_COUNT = 24;
+    private static final int BID_COUNT = 28;
+    private static final int HEADER = 32;
+    // price and amount.
+    private static final int LEVEL = 16;
+
+    private final int levels;
+    private final int slotsPerChunk;
+    private final int slotBytes;
+
+    private final ConcurrentMap<MarketKey, Slot> slots = new ConcurrentHashMap<>();
+    private final Deque<Slot> free = new ArrayDeque<>();
+    private ByteBuffer chunk;
+    private int chunkSlots;
+    private long allocatedBytes;
+
+    private static class Slot {
+        private final ByteBuffer buffer;
+        private final StampedLock lock = new StampedLock();
+        // market the slot holds, changed under the write lock when the slot is reused.
+        private volatile MarketKey market;
+
+        Slot(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    /*
+     * Flyweight over one side of a slot.
+     */
+    private static class BufferSide implements CompactOrderBook.Side {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int size;
+        private final Order.OrderType type;
+
+        BufferSide(ByteBuffer buffer, int offset, int size, Order.OrderType type) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.size = size;
+            this.type = type;
+        }
+
+        @Override
+        public Order.OrderType getType() {
+            return type;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long getPrice(int i) {
+            return buffer.getLong(offset + i * LEVEL);
+        }
+
+        @Override
+        public long getAmount(int i) {
+            return buffer.getLong(offset + i * LEVEL + 8);
+        }
+
+        @Override
+        public CompactOrderBook.Side head(int n) {
+            return n >= size ? this : new BufferSide(buffer, offset, Math.max(n, 0), type);
+        }
+    }
+
+    public OffHeapOrderBookStore(PropertyResolver properties) {
+        this.levels = properties.getProperty(PREFIX + "levels", Integer.class, 200);
+        this.slotsPerChunk = properties.getProperty(PREFIX + "slots-per-chunk", Integer.class, 64);
+        this.slotBytes = HEADER + 2 * levels * LEVEL;
+    }
+
+    /*
+     * Stores book as the current book of market, keeping the best levels levels per side.
+     */
+    public void write(MarketKey market, Timestamped<CompactOrderBook> book) {
+        Slot slot = slots.get(market);
+        if (slot == null) {
+            slot = slots.computeIfAbsent(market, this::allocate);
+        }
+        CompactOrderBook orderBook = book.getValue();
+        CompactOrderBook.Side asks = orderBook.getAsks().head(levels);
+        CompactOrderBook.Side bids = orderBook.getBids().head(levels);
+        ByteBuffer buffer = slot.buffer;
+
+        long stamp = slot.lock.writeLock();
+        try {
+            if (!market.equals(slot.market)) {
+                // removed meanwhile, the slot may belong to another market by now.
+                return;
+            }
+            buffer.putLong(FETCHED_AT, book.getFetchedAt());
+            buffer.putLong(TIME_STAMP, orderBook.getTimeStamp() == null ? -1 : orderBook.getTimeStamp().getTime());
+            buffer.putInt(PRICE_SCALE, orderBook.getPriceScale());
+            buffer.putInt(AMOUNT_SCALE, orderBook.getAmountScale());
+            buffer.putInt(ASK_COUNT, asks.size());
+            buffer.putInt(BID_COUNT, bids.size());
+            putLevels(buffer, HEADER, asks);
+            putLevels(buffer, HEADER + levels * LEVEL, bids);
+        }
+        finally {
+            slot.lock.unlockWrite(stamp);
+        }
+    }
+
+    /*
+     * reader applied to the book of market, stamped with its fetch time. Null if the market
+     * has no book or it is older than maxAgeMillis (any age if null).
+     */
+    public <T> Timestamped<T> read(MarketKey market, Long maxAgeMillis, Function<CompactOrderBook, T> reader) {
+        Slot slot = slots.get(market);
+        if (slot == null) {
+            return null;
+        }
+        long stamp = slot.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                Timestamped<T> result = view(slot, market, maxAgeMillis, reader);
+                if (slot.lock.validate(stamp)) {
+                    return result;
+                }
+            }
+            catch (RuntimeException ex) {
+                // torn by a concurrent write, read again under the lock.
+                if (slot.lock.validate(stamp)) {
+                    throw ex;
+                }
+            }
+        }
+        stamp = slot.lock.readLock();
+        try {
+            return view(slot, market, maxAgeMillis, reader);
+        }
+        finally {
+            slot.lock.unlockRead(stamp);
+        }
+    }
+
+    /*
+     * Levels kept per side, deeper ones are dropped on write.
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    public void remove(MarketKey market) {
+        Slot slot = slots.remove(market);
+        if (slot == null) {
+            return;
+        }
+        long stamp = slot.lock.writeLock();
+        try {
+            slot.market = null;
+        }
+        finally {
+            slot.lock.unlockWrite(stamp);
+        }
+        synchronized (free) {
+            free.push(slot);
+        }
+    }
+
+    public ObjectNode stats(JsonHelper jh) {
+        ObjectNode json = jh.getObjectNode();
+        json.put("markets", slots.size());
+        json.put("levels", levels);
+        synchronized (free) {
+            json.put("free_slots", free.size() + slotsPerChunk - chunkSlots);
+            json.put("allocated_bytes", allocatedBytes);
+        }
+        return json;
+    }
+
+    private <T> Timestamped<T> view(Slot slot, MarketKey market, Long maxAgeMillis, Function<CompactOrderBook, T> reader) {
+        ByteBuffer buffer = slot.buffer;
+        long fetchedAt = buffer.getLong(FETCHED_AT);
+        if (!market.equals(slot.market) || fetchedAt < 0) {
+            return null;
+        }
+        if (maxAgeMillis != null && System.currentTimeMillis() - fetchedAt > maxAgeMillis) {
+            return null;
+        }
+        long timeStamp = buffer.getLong(TIME_STAMP);
+        CompactOrderBook orderBook = new CompactOrderBook(
+                market.getCurrencyPair(),
+                timeStamp < 0 ? null : new Date(timeStamp),
+                buffer.getInt(PRICE_SCALE),
+                buffer.getInt(AMOUNT_SCALE),
+                new BufferSide(buffer, HEADER, buffer.getInt(ASK_COUNT), Order.OrderType.ASK),
+                new BufferSide(buffer, HEADER + levels * LEVEL, buffer.getInt(BID_COUNT), Order.OrderType.BID));
+        return new Timestamped<>(reader.apply(orderBook), fetchedAt);
+    }
+
+    private static void putLevels(ByteBuffer buffer, int offset, CompactOrderBook.Side side) {
+        for (int i = 0; i < side.size(); i++) {
+            buffer.putLong(offset + i * LEVEL, side.getPrice(i));
+            buffer.putLong(offset + i * LEVEL + 8, side.getAmount(i));
+        }
+    }
+
+    private Slot allocate(MarketKey market) {
+        Slot slot;
+        synchronized (free) {
+            slot = free.poll();
+            if (slot == null) {
+                if (chunk == null || chunkSlots == slotsPerChunk) {
+                    chunk = ByteBuffer.allocateDirect(slotsPerChunk * slotBytes);
+                    chunkSlots = 0;
+                    allocatedBytes += chunk.capacity();
+                    log.info("Allocated {} bytes off-heap for {} more order books, {} in total.", chunk.capacity(), slotsPerChunk, allocatedBytes);
+                }
+                ByteBuffer buffer = chunk.duplicate();
+                // through Buffer, the ByteBuffer overrides of JDK 9+ do not exist on Java 8.
+                ((Buffer) buffer).position(chunkSlots * slotBytes);
+                ((Buffer) buffer).limit((chunkSlots + 1) * slotBytes);
+                slot = new Slot(buffer.slice());
+                chunkSlots++;
+            }
+        }
+        long stamp = slot.lock.writeLock();
+        try {
+            slot.buffer.putLong(FETCHED_AT, -1);
+            slot.market = market;
+        }
+        finally {
+            slot.lock.unlockWrite(stamp);
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,286 @@
+package org.altfund.xchangeinterface.xchange.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.PropertyResolver;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.marketdata.OrderBook;
+
+import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.util.Timestamped;
+import org.altfund.xchangeinterface.xchange.model.CompactOrderBook;
+import org.altfund.xchangeinterface.xchange.model.ExchangeMetaDataSnapshot;
+import org.altfund.xchangeinterface.xchange.model.MarketKey;
+import org.altfund.xchangeinterface.xchange.service.exceptions.XChangeServiceException;
+import org.altfund.xchangeinterface.xchange.service.util.ExchangeScale;
+import org.altfund.xchangeinterface.xchange.service.stream.StreamingOrderBooks;
+
+/**
+ * Order books clients subscribed to are polled in the background and read from memory. Every
+ * exchange gets one poller thread, so upstream load grows with the number of subscribed
+ * markets and not with how often clients read them. A subscription that was neither read nor
+ * renewed for idle-ms expires on its next poll.
+ *
+ * Polled books are kept off-heap in an OffHeapOrderBookStore at the exchange's scales and
+ * bypass the order book cache. Markets on exchanges with a stream (see StreamingOrderBooks)
+ * are streamed instead of polled, their task only checks for expiry.
+ *
+ * xchange.subscription.interval-ms and xchange.subscription.[exchange].interval-ms set the
+ * poll interval, xchange.subscription.max bounds the number of subscriptions.
+ */
+@Slf4j
+public class OrderBookSubscriptions implements DisposableBean {
+
+    private static final String PREFIX = "xchange.subscription.";
+
+    private final PropertyResolver properties;
+    private final XChangeFactory xChangeFactory;
+    private final ExchangeCatalog exchangeCatalog;
+    private final MarketDataFetcher marketDataFetcher;
+    private final StreamingOrderBooks streamingOrderBooks;
+    private final OffHeapOrderBookStore store;
+    private final ExchangeScale exchangeScale;
+    private final long idleMillis;
+    private final long staleMillis;
+    private final int maxSubscriptions;
+
+    private final ConcurrentMap<MarketKey, Subscription> subscriptions = new ConcurrentHashMap<>();
+    // subscriptions plus those being created, reserved before the insert so max holds.
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final ConcurrentMap<String, ScheduledExecutorService> pollers = new ConcurrentHashMap<>();
+
+    private static class Subscription {
+        private final MarketKey market;
+        private final long intervalMillis;
+        private final boolean streamed;
+        private volatile long lastRead = System.currentTimeMillis();
+        private volatile ScheduledFuture<?> task;
+
+        Subscription(MarketKey market, long intervalMillis, boolean streamed) {
+            this.market = market;
+            this.intervalMillis = intervalMillis;
+            this.streamed = streamed;
+        }
+    }
+
+    public OrderBookSubscriptions(
+            PropertyResolver properties,
+            XChangeFactory xChangeFactory,
+            ExchangeCatalog exchangeCatalog,
+            MarketDataFetcher marketDataFetcher,
+            StreamingOrderBooks streamingOrderBooks,
+            OffHeapOrderBookStore store,
+            ExchangeScale exchangeScale) {
+        this.properties = properties;
+        this.xChangeFactory = xChangeFactory;
+        this.exchangeCatalog = exchangeCatalog;
+        this.marketDataFetcher = marketDataFetcher;
+        this.streamingOrderBooks = streamingOrderBooks;
+        this.store = store;
+        this.exchangeScale = exchangeScale;
+        this.idleMillis = properties.getProperty(PREFIX + "idle-ms", Long.class, 60000L);
+        this.staleMillis = properties.getProperty(PREFIX + "stale-ms", Long.class, 5000L);
+        this.maxSubscriptions = properties.getProperty(PREFIX + "max", Integer.class, 500);
+    }
+
+    /*
+     * Subscribes to cp on exchange, or renews the subscription if it exists.
+     */
+    public ObjectNode subscribe(String exchange, CurrencyPair cp, JsonHelper jh) throws XChangeServiceException {
+        if (!exchangeCatalog.resolve(exchange).map(exchangeCatalog::isAvailable).orElse(false)) {
+            throw new XChangeServiceException("No such exchange " + exchange);
+        }
+        String exchangeName = exchangeCatalog.canonicalName(exchange);
+        MarketKey market = new MarketKey(exchangeName, cp);
+        Subscription subscription = subscriptions.get(market);
+        if (subscription == null) {
+            boolean streamed = streamingOrderBooks.supports(exchangeName);
+            Subscription created = new Subscription(market, streamed ? idleMillis : interval(exchangeName), streamed);
+            if (!reserve()) {
+                throw new XChangeServiceException("Too many order book subscriptions, max " + maxSubscriptions);
+            }
+            subscription = subscriptions.putIfAbsent(market, created);
+            if (subscription != null) {
+                // subscribed concurrently, renew that one.
+                reserved.decrementAndGet();
+            }
+            else {
+                subscription = created;
+                if (streamed) {
+                    try {
+                        streamingOrderBooks.subscribe(exchangeName, cp);
+                    }
+                    catch (Exception ex) {
+                        subscriptions.remove(market, created);
+                        reserved.decrementAndGet();
+                        throw new XChangeServiceException("Could not stream order book " + cp + " on " + exchangeName, ex);
+                    }
+                }
+                created.task = poller(exchangeName).scheduleWithFixedDelay(
+                        () -> poll(created), streamed ? idleMillis : 0, created.intervalMillis, TimeUnit.MILLISECONDS);
+                log.info("Subscribed to order book {} on {}, {} every {} ms.", cp, exchangeName, streamed ? "streamed, expiry check" : "polling", created.intervalMillis);
+            }
+        }
+        subscription.lastRead = System.currentTimeMillis();
+
+        ObjectNode json = jh.getObjectNode();
+        json.put("exchange", exchangeName);
+        json.put("market", cp.toString());
+        json.put("streamed", subscription.streamed);
+        json.put("interval_ms", subscription.intervalMillis);
+        json.put("idle_ms", idleMillis);
+        return json;
+    }
+
+    /*
+     * Polled order book of cp on exchange cut to depth if subscribed and no older than
+     * maxAgeMillis (stale-ms if null), otherwise null. Polled books only hold
+     * xchange.offheap.levels levels per side, so they are null for a null (full) or deeper
+     * depth too. Reading renews the subscription.
+     */
+    public Timestamped<OrderBook> read(String exchange, CurrencyPair cp, Long maxAgeMillis, Integer depth) {
+        Subscription subscription = subscriptions.get(new MarketKey(exchangeCatalog.canonicalName(exchange), cp));
+        if (subscription == null) {
+            return null;
+        }
+        subscription.lastRead = System.currentTimeMillis();
+        if (subscription.streamed) {
+            return streamingOrderBooks.read(exchange, cp, maxAgeMillis);
+        }
+        if (!holds(depth)) {
+            return null;
+        }
+        return store.read(subscription.market, maxAgeMillis == null ? staleMillis : maxAgeMillis,
+                book -> book.withSides(book.getAsks().head(depth), book.getBids().head(depth)).toOrderBook());
+    }
+
+    /*
+     * As read, with reader applied to the polled book where it lies off-heap (see
+     * OffHeapOrderBookStore.read for what reader may do). reader gets every stored level,
+     * cutting to depth is up to it. Null for streamed markets too.
+     */
+    public <T> Timestamped<T> read(String exchange, CurrencyPair cp, Long maxAgeMillis, Integer depth, Function<CompactOrderBook, T> reader) {
+        Subscription subscription = subscriptions.get(new MarketKey(exchangeCatalog.canonicalName(exchange), cp));
+        if (subscription == null || subscription.streamed) {
+            return null;
+        }
+        subscription.lastRead = System.currentTimeMillis();
+        if (!holds(depth)) {
+            return null;
+        }
+        return store.read(subscription.market, maxAgeMillis == null ? staleMillis : maxAgeMillis, reader);
+    }
+
+    public ObjectNode stats(JsonHelper jh) {
+        ObjectNode json = jh.getObjectNode();
+        for (Subscription subscription : subscriptions.values()) {
+            ObjectNode exchange = json.has(subscription.market.getExchange())
+                ? (ObjectNode) json.get(subscription.market.getExchange())
+                : json.putObject(subscription.market.getExchange());
+            Timestamped<Boolean> orderBook = subscription.streamed ? null : store.read(subscription.market, null, book -> true);
+            exchange.put(subscription.market.getCurrencyPair().toString(), orderBook == null ? -1 : orderBook.getAgeMillis());
+        }
+        json.set("off_heap", store.stats(jh));
+        return json;
+    }
+
+    private void poll(Subscription subscription) {
+        MarketKey market = subscription.market;
+        if (System.currentTimeMillis() - subscription.lastRead > idleMillis) {
+            if (subscriptions.remove(market, subscription)) {
+                reserved.decrementAndGet();
+            }
+            subscription.task.cancel(false);
+            if (subscription.streamed) {
+                streamingOrderBooks.unsubscribe(market.getExchange(), market.getCurrencyPair());
+            }
+            else {
+                store.remove(market);
+            }
+            log.info("Order book subscription {} on {} expired.", market.getCurrencyPair(), market.getExchange());
+            return;
+        }
+        if (subscription.streamed) {
+            return;
+        }
+        try {
+            Timestamped<OrderBook> orderBook = marketDataFetcher.fetchOrderBook(
+                    market.getExchange(),
+                    xChangeFactory.getMarketDataService(market.getExchange()),
+                    market.getCurrencyPair());
+            store.write(market, new Timestamped<>(
+                    exchangeScale.compact(orderBook.getValue(), market.getCurrencyPair(), snapshot(market.getExchange())),
+                    orderBook.getFetchedAt()));
+        }
+        catch (Exception ex) {
+            // keep the last book, readers fall back to a direct fetch once it is stale.
+            log.debug("Polling order book {} on {} failed: {}", market.getCurrencyPair(), market.getExchange(), ex.getMessage());
+        }
+    }
+
+    /*
+     * True if polled books have depth levels per side, false for the full book (null).
+     */
+    private boolean holds(Integer depth) {
+        return depth != null && depth <= store.getLevels();
+    }
+
+    /*
+     * Takes one of the maxSubscriptions slots, false if all are taken.
+     */
+    private boolean reserve() {
+        while (true) {
+            int current = reserved.get();
+            if (current >= maxSubscriptions) {
+                return false;
+            }
+            if (reserved.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private ExchangeMetaDataSnapshot snapshot(String exchange) {
+        try {
+            return xChangeFactory.getExchangeMetaDataSnapshot(exchange);
+        }
+        catch (Exception ex) {
+            // the book's own scales will do.
+            return null;
+        }
+    }
+
+    private ScheduledExecutorService poller(String exchange) {
+        return pollers.computeIfAbsent(exchange, key -> Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "orderbook-poller-" + key);
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    private long interval(String exchange) {
+        Long value = properties.getProperty(PREFIX + exchange + ".interval-ms", Long.class);
+        if (value != null) {
+            return value;
+        }
+        return properties.getProperty(PREFIX + "interval-ms", Long.class, 1000L);
+    }
+
+    @Override
+    public void destroy() {
+        for (ScheduledExecutorService poller : pollers.values()) {
+            poller.shutdownNow();
+        }
+    }
+}
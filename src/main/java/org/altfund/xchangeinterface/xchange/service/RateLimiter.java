@@ -0,0 +1,122 @@
+package org.altfund.xchangeinterface.xchange.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.core.env.PropertyResolver;
+
+import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.util.TokenBucket;
+import org.altfund.xchangeinterface.xchange.service.exceptions.RateLimitExceededException;
+
+/**
+ * One token bucket per exchange, shared by its public and credentialed service calls.
+ *
+ * Buckets and weights are read from properties the first time an exchange or endpoint is seen:
+ *   xchange.ratelimit.[exchange.]permits-per-second / burst
+ *   xchange.ratelimit.[exchange.]weight.[method name]
+ * where the exchange specific key wins over the default. In block mode callers wait up to
+ * max-wait-ms for tokens, in fail-fast mode RateLimitExceededException is thrown right away.
+ */
+@Slf4j
+public class RateLimiter {
+
+    private static final String PREFIX = "xchange.ratelimit.";
+
+    private final PropertyResolver properties;
+    private final boolean block;
+    private final long maxWaitNanos;
+
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> weights = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Metrics> metrics = new ConcurrentHashMap<>();
+
+    private static class Metrics {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder waited = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder rejected = new LongAdder();
+    }
+
+    public RateLimiter(PropertyResolver properties) {
+        this.properties = properties;
+        this.block = !"fail-fast".equalsIgnoreCase(properties.getProperty(PREFIX + "mode", "block"));
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(properties.getProperty(PREFIX + "max-wait-ms", Long.class, 10000L));
+    }
+
+    /*
+     * Blocks until the call may go out, or throws RateLimitExceededException.
+     */
+    public void acquire(String exchange, String endpoint) {
+        int weight = weight(exchange, endpoint);
+        if (weight <= 0) {
+            return;
+        }
+
+        Metrics m = metrics.computeIfAbsent(exchange, key -> new Metrics());
+        m.calls.increment();
+        long waitNanos = bucket(exchange).reserve(weight, block ? maxWaitNanos : 0);
+        if (waitNanos < 0) {
+            m.rejected.increment();
+            throw new RateLimitExceededException("Rate limit of " + exchange + " exceeded calling " + endpoint);
+        }
+        if (waitNanos == 0) {
+            return;
+        }
+
+        m.waited.increment();
+        m.waitNanos.add(waitNanos);
+        m.maxWaitNanos.accumulate(waitNanos);
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RateLimitExceededException("Interrupted waiting for the rate limit of " + exchange);
+        }
+    }
+
+    public ObjectNode stats(JsonHelper jh) {
+        ObjectNode json = jh.getObjectNode();
+        json.put("mode", block ? "block" : "fail-fast");
+        for (ConcurrentMap.Entry<String, Metrics> entry : metrics.entrySet()) {
+            Metrics m = entry.getValue();
+            ObjectNode exchange = jh.getObjectNode();
+            exchange.put("calls", m.calls.sum());
+            exchange.put("waited", m.waited.sum());
+            exchange.put("wait_ms_total", TimeUnit.NANOSECONDS.toMillis(m.waitNanos.sum()));
+            exchange.put("wait_ms_max", TimeUnit.NANOSECONDS.toMillis(m.maxWaitNanos.get()));
+            exchange.put("rejected", m.rejected.sum());
+            json.set(entry.getKey(), exchange);
+        }
+        return json;
+    }
+
+    private TokenBucket bucket(String exchange) {
+        return buckets.computeIfAbsent(exchange, key -> {
+            double permitsPerSecond = property(key, "permits-per-second", Double.class, 5.0);
+            double burst = property(key, "burst", Double.class, permitsPerSecond * 2);
+            log.debug("Rate limiting {} to {}/s, burst {}.", key, permitsPerSecond, burst);
+            return new TokenBucket(permitsPerSecond, burst);
+        });
+    }
+
+    private int weight(String exchange, String endpoint) {
+        return weights.computeIfAbsent(exchange + '\u0000' + endpoint,
+                key -> property(exchange, "weight." + endpoint, Integer.class, 1));
+    }
+
+    private <T> T property(String exchange, String name, Class<T> type, T defaultValue) {
+        T value = properties.getProperty(PREFIX + exchange + "." + name, type);
+        if (value != null) {
+            return value;
+        }
+        return properties.getProperty(PREFIX + name, type, defaultValue);
+    }
+}
@@ -0,0 +1,174 @@
+package org.altfund.xchangeinterface.xchange.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.PropertyResolver;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.marketdata.Ticker;
+import org.knowm.xchange.service.marketdata.MarketDataService;
+
+/**
+ * Fetches the tickers of many pairs of one exchange. Exchanges with a bulk ticker strategy
+ * answer in one upstream call, pairs it did not return (or every pair, if the exchange has
+ * none) are fetched one by one, concurrently on a shared pool. At most
+ * parallelism calls per exchange are in flight across all requests, and everything still
+ * missing at the deadline is reported as a TimeoutException for its pair.
+ *
+ * xchange.ticker.parallelism and xchange.ticker.[exchange].parallelism set the limit,
+ * xchange.ticker.deadline-ms the overall deadline of one fetch.
+ */
+@Slf4j
+public class TickerFanOut implements DisposableBean {
+
+    private static final String PREFIX = "xchange.ticker.";
+
+    private final PropertyResolver properties;
+    private final long deadlineMillis;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, Semaphore> lanes = new ConcurrentHashMap<>();
+
+    private final BulkTickers bulkTickers;
+
+    public TickerFanOut(PropertyResolver properties, BulkTickers bulkTickers) {
+        this.properties = properties;
+        this.bulkTickers = bulkTickers;
+        this.deadlineMillis = properties.getProperty(PREFIX + "deadline-ms", Long.class, 20000L);
+        this.executor = Executors.newFixedThreadPool(properties.getProperty(PREFIX + "threads", Integer.class, 32), runnable -> {
+            Thread thread = new Thread(runnable, "ticker-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /*
+     * Ticker or the Exception it failed with for every pair, in the order of currencyPairs.
+     */
+    public List<Object> fetch(String exchange, MarketDataService marketDataService, List<CurrencyPair> currencyPairs) {
+        Map<CurrencyPair, Ticker> bulk = bulkTickers.getTickers(exchange, marketDataService, currencyPairs);
+        List<CurrencyPair> missing = new ArrayList<>();
+        for (CurrencyPair cp : currencyPairs) {
+            if (!bulk.containsKey(cp)) {
+                missing.add(cp);
+            }
+        }
+        if (missing.isEmpty()) {
+            List<Object> tickers = new ArrayList<>(currencyPairs.size());
+            for (CurrencyPair cp : currencyPairs) {
+                tickers.add(bulk.get(cp));
+            }
+            return tickers;
+        }
+
+        List<Object> fetched = fanOut(exchange, marketDataService, missing);
+        List<Object> tickers = new ArrayList<>(currencyPairs.size());
+        int m = 0;
+        for (CurrencyPair cp : currencyPairs) {
+            tickers.add(bulk.containsKey(cp) ? bulk.get(cp) : fetched.get(m++));
+        }
+        return tickers;
+    }
+
+    private List<Object> fanOut(String exchange, MarketDataService marketDataService, List<CurrencyPair> currencyPairs) {
+        int size = currencyPairs.size();
+        long deadline = System.currentTimeMillis() + deadlineMillis;
+        AtomicReferenceArray<Object> results = new AtomicReferenceArray<>(size);
+        AtomicInteger next = new AtomicInteger();
+        Semaphore lane = lane(exchange);
+
+        // permits are taken here, never on the pool: a saturated lane only makes this caller
+        // wait, and every worker submitted holds one permit and drains pairs until none are left.
+        int permits = 0;
+        try {
+            if (lane.tryAcquire(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                permits = 1;
+                int parallelism = Math.min(parallelism(exchange), size);
+                while (permits < parallelism && lane.tryAcquire()) {
+                    permits++;
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int w = 0; w < permits; w++) {
+            try {
+                workers.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        int i;
+                        while ((i = next.getAndIncrement()) < size && System.currentTimeMillis() < deadline) {
+                            try {
+                                results.set(i, marketDataService.getTicker(currencyPairs.get(i)));
+                            }
+                            catch (Exception e) {
+                                results.set(i, e);
+                            }
+                        }
+                    }
+                    finally {
+                        lane.release();
+                    }
+                }, executor));
+            }
+            catch (RuntimeException ex) {
+                // rejected, the pool is shutting down.
+                lane.release();
+            }
+        }
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(workers.toArray(new CompletableFuture[0]));
+        try {
+            all.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException ex) {
+            // workers stop picking up pairs at the deadline, calls in flight finish on their own.
+            log.warn("Ticker fetch of {} hit the {} ms deadline.", exchange, deadlineMillis);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException ex) {
+            log.error("Ticker worker of {} failed: {}", exchange, ex.getMessage());
+        }
+
+        List<Object> tickers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Object result = results.get(i);
+            tickers.add(result != null
+                    ? result
+                    : new TimeoutException("No ticker for " + currencyPairs.get(i) + " within " + deadlineMillis + " ms"));
+        }
+        return tickers;
+    }
+
+    private Semaphore lane(String exchange) {
+        return lanes.computeIfAbsent(exchange.toLowerCase(), key -> new Semaphore(parallelism(key)));
+    }
+
+    private int parallelism(String exchange) {
+        Integer value = properties.getProperty(PREFIX + exchange.toLowerCase() + ".parallelism", Integer.class);
+        return Math.max(1, value != null ? value : properties.getProperty(PREFIX + "parallelism", Integer.class, 4));
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
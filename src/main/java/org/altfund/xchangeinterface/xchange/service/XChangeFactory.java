@@ -6,6 +6,7 @@ import java.util.List;
 
 import org.altfund.xchangeinterface.xchange.model.Exchange;
 import org.altfund.xchangeinterface.xchange.model.ExchangeCredentials;
+import org.altfund.xchangeinterface.xchange.model.ExchangeMetaDataSnapshot;
 
 import org.knowm.xchange.dto.meta.ExchangeMetaData;
 import org.knowm.xchange.currency.CurrencyPair;
@@ -25,6 +26,9 @@ public interface XChangeFactory {
 
   ExchangeMetaData getExchangeMetaData(String exchangeName) throws XChangeServiceException, IOException;
   List<CurrencyPair> getExchangeSymbols(String exchangeName) throws XChangeServiceException, IOException;
+  ExchangeMetaDataSnapshot getExchangeMetaDataSnapshot(String exchangeName) throws XChangeServiceException, IOException;
+  ExchangeMetaDataSnapshot refreshExchangeMetaData(String exchangeName) throws XChangeServiceException, IOException;
+  Set<String> getInitializedExchanges();
   MarketDataService getMarketDataService(String exchangeName) throws XChangeServiceException, IOException;
   //boolean setProperties(String exchangeName);
   //boolean setProperties(ExchangeCredentials exchangeCredentials);
@@ -33,4 +37,5 @@ public interface XChangeFactory {
    AccountService getAccountService(ExchangeCredentials exchangeCredentials) throws XChangeServiceException, IOException;
    org.knowm.xchange.Exchange getExchange(ExchangeCredentials exchangeCredentials) throws XChangeServiceException, IOException;
    org.knowm.xchange.Exchange getExchange(String exchange) throws XChangeServiceException, IOException;
+   void invalidate(ExchangeCredentials exchangeCredentials);
 }
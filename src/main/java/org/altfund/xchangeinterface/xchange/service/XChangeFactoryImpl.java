@@ -1,22 +1,31 @@
 package org.altfund.xchangeinterface.xchange.service;
 
+import java.util.HashSet;
 import java.util.Map;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.function.Consumer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.lang.IllegalStateException;
+import java.lang.reflect.Field;
 
 import lombok.extern.slf4j.Slf4j;
 
 import org.altfund.xchangeinterface.xchange.model.ExchangeCredentials;
 import org.altfund.xchangeinterface.xchange.model.Exchange;
+import org.altfund.xchangeinterface.xchange.model.ExchangeMetaDataSnapshot;
+import org.altfund.xchangeinterface.util.SingleFlightRegistry;
+import org.altfund.xchangeinterface.xchange.service.util.MetaDataDiff;
+import org.altfund.xchangeinterface.xchange.service.util.ServiceGuard;
 
 import org.knowm.xchange.service.trade.TradeService;
 import org.knowm.xchange.service.marketdata.MarketDataService;
 import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.BaseExchange;
 import org.knowm.xchange.ExchangeFactory;
 import org.knowm.xchange.ExchangeSpecification;
 import org.knowm.xchange.service.account.AccountService;
@@ -34,89 +43,94 @@ import org.altfund.xchangeinterface.xchange.service.exceptions.XChangeServiceExc
 @Slf4j
 public class XChangeFactoryImpl implements XChangeFactory {
 
-    private Map<String, org.knowm.xchange.Exchange> exchangeMap = new LinkedHashMap<>();
-    private Map<ExchangeCredentials, org.knowm.xchange.Exchange> exchangeCredsMap = new LinkedHashMap<>();
+    // single-flight registries: every exchange and every credential set is created and
+    // remote initialized exactly once, concurrent callers wait on the same pending future.
+    private final SingleFlightRegistry<String, org.knowm.xchange.Exchange> exchangeMap = new SingleFlightRegistry<>();
+    private final ExchangeCatalog exchangeCatalog;
+    private final CredentialedExchangePool exchangeCredsPool;
+    private final MetaDataSnapshotStore metaDataSnapshotStore;
+    private final ServiceGuard serviceGuard;
+    private final ExecutorService backgroundInit = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "exchange-background-init");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<String> backgroundInitPending = ConcurrentHashMap.newKeySet();
+
+    public XChangeFactoryImpl(
+            ExchangeCatalog exchangeCatalog,
+            CredentialedExchangePool exchangeCredsPool,
+            MetaDataSnapshotStore metaDataSnapshotStore,
+            ServiceGuard serviceGuard) {
+        this.exchangeCatalog = exchangeCatalog;
+        this.serviceGuard = serviceGuard;
+        this.exchangeCredsPool = exchangeCredsPool;
+        this.metaDataSnapshotStore = metaDataSnapshotStore;
+    }
 
-    private <T> T variableDispatch(XChangeDispatcher dispatcher, String exchangeName) throws XChangeServiceException, IOException{
+    private <T> T variableDispatch(XChangeDispatcher dispatcher, String requestedName) throws XChangeServiceException, IOException{
+        String exchangeName = exchangeCatalog.canonicalName(requestedName);
         // variable dispatch will emulate getTradeService but call dispatcher.comeback(exchange) instead.
-        // In order to handle not re-initializing exchanges all the time, it would be preferable
-        // to see how "apply specification" works it could be the case that it is better,
-        // and we only call remoteInit on an exchange when we get an error in order to
-        // see if a re-initialization would help. Either way, dispatcher.comeback(exchange)
-        // as a line is invaluable to genearlizing the cache-ing strategy. The avoidance
-        // or re-initialization for every exchange <=> credential pair would be highly desirable.
-        Optional<org.knowm.xchange.Exchange> exchangeFirstTry =
-            Optional.ofNullable(exchangeMap.get(exchangeName));
-
-        if (!exchangeFirstTry.isPresent()) {
-            if (setProperties(exchangeName)) {
-                Optional<org.knowm.xchange.Exchange> exchangeSecondTry =
-                    Optional.ofNullable(exchangeMap.get(exchangeName));
+        // dispatcher.comeback(exchange) as a line is invaluable to genearlizing the cache-ing strategy.
+        // services are handed out behind the circuit breaker and rate limiter of the exchange.
+        return serviceGuard.wrap(dispatcher.comeback(await(exchangeMap, exchangeName, () -> {
+            org.knowm.xchange.Exchange xChange = createExchange(exchangeName);
+            metaDataSnapshotStore.save(exchangeName, xChange);
+            return xChange;
+        })), exchangeName, dispatcher);
+    }
 
-                if (!exchangeSecondTry.isPresent()) {
-                    throw new XChangeServiceException("Unknown exchange/exchange init failure,   on second try: " + exchangeName);
-                }
-                else {
-                    log.debug("Adding new exchange {}, calling remote init manually.", exchangeName);
-                    try {
-                        exchangeSecondTry.get().remoteInit();
-                    }
-                    catch(IOException ex) {
-                        log.debug("IO ex on remoteInit {}.", ex.getMessage());
-                        throw ex;
-                    }
-                    catch(ExchangeException ex) {
-                        log.debug("exchange exception ex on remoteInit {}.", ex.getMessage());
-                        throw ex;
-                    }
-                    return dispatcher.comeback(exchangeSecondTry.get());
-                }
-            } else {
-                log.error("excahnge not present {}.", exchangeName);
-                throw new XChangeServiceException("Unknown exchange/exchange init failure, couldn't set properties with params: " + exchangeName);
-            }
+    private <T> T variableDispatch(XChangeDispatcher dispatcher, ExchangeCredentials exchangeCredentials) throws XChangeServiceException, IOException{
+        // credentialed exchanges are created once per credential set and kept in exchangeCredsPool,
+        // they borrow the metadata of the public instance instead of calling remoteInit on every
+        // request. invalidate(exchangeCredentials) drops the cached instance after an auth or
+        // metadata error so the next call builds (and remote inits) a fresh one.
+        try {
+            return serviceGuard.wrap(
+                    dispatcher.comeback(exchangeCredsPool.get(exchangeCredentials, () -> createExchange(exchangeCredentials))),
+                    exchangeCatalog.canonicalName(exchangeCredentials.getExchange()),
+                    dispatcher);
         }
-        else {
-            log.debug("exchange {} already present for given creds.", exchangeName);
-            return dispatcher.comeback(exchangeFirstTry.get());
+        catch (XChangeServiceException | IOException | RuntimeException ex) {
+            throw ex;
+        }
+        catch (Exception ex) {
+            throw new XChangeServiceException("Unknown exchange/exchange init failure: " + ex.getMessage(), ex);
         }
     }
 
-    private <T> T variableDispatch(XChangeDispatcher dispatcher, ExchangeCredentials exchangeCredentials) throws XChangeServiceException, IOException{
-        // variable dispatch will emulate getTradeService but call dispatcher.comeback(exchange) instead.
-        // In order to handle not re-initializing exchanges all the time, it would be preferable
-        // to see how "apply specification" works it could be the case that it is better,
-        // and we only call remoteInit on an exchange when we get an error in order to
-        // see if a re-initialization would help. Either way, dispatcher.comeback(exchange)
-        // as a line is invaluable to genearlizing the cache-ing strategy. The avoidance
-        // or re-initialization for every exchange <=> credential pair would be highly desirable.
-        Optional<org.knowm.xchange.Exchange> exchangeFirstTry =
-            Optional.ofNullable(exchangeCredsMap.get(exchangeCredentials));
-
-        if (setProperties(exchangeCredentials)) {
-            Optional<org.knowm.xchange.Exchange> exchangeSecondTry =
-                Optional.ofNullable(exchangeCredsMap.get(exchangeCredentials));
+    private <K> org.knowm.xchange.Exchange await(
+            SingleFlightRegistry<K, org.knowm.xchange.Exchange> registry,
+            K key,
+            SingleFlightRegistry.Loader<org.knowm.xchange.Exchange> loader) throws XChangeServiceException, IOException {
+        try {
+            return registry.get(key, loader);
+        }
+        catch (XChangeServiceException | IOException | RuntimeException ex) {
+            throw ex;
+        }
+        catch (Exception ex) {
+            throw new XChangeServiceException("Unknown exchange/exchange init failure: " + ex.getMessage(), ex);
+        }
+    }
 
-            if (!exchangeSecondTry.isPresent()) {
-                throw new XChangeServiceException("Unknown exchange/exchange init failure on second try: " + exchangeCredentials.getExchange());
-            }
-            else {
-                log.debug("Adding new exchange {}, calling remote init manually.", exchangeCredentials.getExchange());
-                try {
-                    exchangeSecondTry.get().remoteInit();
-                }
-                catch(IOException ex) {
-                    log.debug("IO ex on remoteInit {}.", ex.getMessage());
-                    throw ex;
-                }
-                catch(ExchangeException ex) {
-                    log.debug("exchange exception ex on remoteInit {}.", ex.getMessage());
-                    throw ex;
-                }
-                return dispatcher.comeback(exchangeSecondTry.get());
-            }
-        } else {
-            throw new XChangeServiceException("Unknown exchange/exchange init failure, couldn't set properties with params: " + exchangeCredentials.getExchange());
+    /*
+     * Copies the metadata loaded by the public instance onto a freshly created credentialed
+     * instance. BaseExchange keeps it in a protected field without a setter, hence reflection.
+     */
+    private boolean shareMetaData(org.knowm.xchange.Exchange target, ExchangeMetaData exchangeMetaData) {
+        if (exchangeMetaData == null || !(target instanceof BaseExchange)) {
+            return false;
+        }
+        try {
+            Field field = BaseExchange.class.getDeclaredField("exchangeMetaData");
+            field.setAccessible(true);
+            field.set(target, exchangeMetaData);
+            return true;
+        }
+        catch (NoSuchFieldException | IllegalAccessException | SecurityException ex) {
+            log.debug("Could not share exchange meta data {}.", ex.getMessage());
+            return false;
         }
     }
 
@@ -185,12 +199,77 @@ public class XChangeFactoryImpl implements XChangeFactory {
 
     @Override
     public ExchangeMetaData getExchangeMetaData(String exchangeName) throws XChangeServiceException, IOException{
-        return variableDispatch(XChangeDispatcher.ExchangeCurrencyType, exchangeName);
+        return getExchangeMetaDataSnapshot(exchangeName).getExchangeMetaData();
     }
 
     @Override
     public List<CurrencyPair> getExchangeSymbols(String exchangeName) throws XChangeServiceException, IOException{
-        return variableDispatch(XChangeDispatcher.ExchangeSymbolsType, exchangeName);
+        return getExchangeMetaDataSnapshot(exchangeName).getExchangeSymbols();
+    }
+
+    /*
+     * Metadata is always answered from the published snapshot. While the live instance is not
+     * initialized yet a persisted snapshot is served and the remoteInit runs in the background
+     * instead of blocking the caller on it.
+     */
+    @Override
+    public ExchangeMetaDataSnapshot getExchangeMetaDataSnapshot(String requestedName) throws XChangeServiceException, IOException {
+        String exchangeName = exchangeCatalog.canonicalName(requestedName);
+        ExchangeMetaDataSnapshot snapshot = metaDataSnapshotStore.get(exchangeName);
+        if (snapshot == null) {
+            getExchange(exchangeName);
+            snapshot = metaDataSnapshotStore.get(exchangeName);
+            if (snapshot == null) {
+                throw new XChangeServiceException("No metadata available for " + exchangeName);
+            }
+        }
+        else if (exchangeMap.getIfReady(exchangeName) == null && backgroundInitPending.add(exchangeName)) {
+            log.debug("Answering {} from metadata snapshot, initializing in background.", exchangeName);
+            backgroundInit.submit(() -> {
+                try {
+                    getExchange(exchangeName);
+                }
+                catch (Exception ex) {
+                    log.warn("Background init of {} failed: {}", exchangeName, ex.getMessage());
+                }
+                finally {
+                    backgroundInitPending.remove(exchangeName);
+                }
+            });
+        }
+        return snapshot;
+    }
+
+    /*
+     * Remote inits a throwaway instance so nothing already published is ever mutated. When the
+     * metadata changed, the fresh instance replaces the live one and a new snapshot is published.
+     */
+    @Override
+    public ExchangeMetaDataSnapshot refreshExchangeMetaData(String requestedName) throws XChangeServiceException, IOException {
+        String exchangeName = exchangeCatalog.canonicalName(requestedName);
+        org.knowm.xchange.Exchange fresh = createExchange(exchangeName);
+        ExchangeMetaDataSnapshot current = metaDataSnapshotStore.get(exchangeName);
+        if (!MetaDataDiff.isChanged(current, fresh.getExchangeMetaData(), exchangeName)) {
+            log.debug("Metadata of {} unchanged.", exchangeName);
+            return current;
+        }
+        exchangeMap.put(exchangeName, fresh);
+        return metaDataSnapshotStore.save(exchangeName, fresh);
+    }
+
+    /*
+     * Exchanges with a live public instance, i.e. asked for since startup. Those only known
+     * from a persisted metadata snapshot are not included.
+     */
+    @Override
+    public Set<String> getInitializedExchanges() {
+        Set<String> initialized = new HashSet<>();
+        for (String exchangeName : exchangeMap.keys()) {
+            if (exchangeMap.getIfReady(exchangeName) != null) {
+                initialized.add(exchangeName);
+            }
+        }
+        return initialized;
     }
 
     @Override
@@ -205,77 +284,88 @@ public class XChangeFactoryImpl implements XChangeFactory {
            */
     }
 
-    //@Override
-    private boolean setProperties(String exchangeName) {
+    /*
+     * O(1) lookup of the Exchange entry for a name or alias, fails fast when the xchange
+     * module is not on the classpath.
+     */
+    private Exchange resolve(String exchangeName) throws XChangeServiceException {
+        Optional<Exchange> exchange = exchangeCatalog.resolve(exchangeName);
+        if (!exchange.isPresent()) {
+            log.error("excahnge not present {}.", exchangeName);
+            throw new XChangeServiceException("Unknown exchange/exchange init failure, couldn't set properties with params: " + exchangeName);
+        }
+        if (!exchangeCatalog.isAvailable(exchange.get())) {
+            throw new XChangeServiceException("Exchange module not on classpath: " + exchangeName);
+        }
+        return exchange.get();
+    }
+
+    private org.knowm.xchange.Exchange createExchange(String exchangeName) throws XChangeServiceException, IOException {
 
         log.debug("requested  " + exchangeName);
+        Exchange exchange = resolve(exchangeName);
+        ExchangeSpecification exchangeSpecification = createExchangeSpecification(exchange);
+        org.knowm.xchange.Exchange xChange;
         try {
-        for (Exchange exchange : Exchange.values()) {
-            if (exchange.getExchangeClassName().contains(exchangeName)) {
-                ExchangeSpecification exchangeSpecification = createExchangeSpecification(exchange);
-                try {
-                    exchangeMap.put(exchangeName, ExchangeFactory.INSTANCE.createExchange(exchangeSpecification));
-                    log.debug("Added exchange " + exchangeName);
-                    return true;
-                } catch (ExchangeException ex) {
-                    log.error("Couldn't create XChange {},\n{}", exchangeName, ex.getStackTrace());
-                    return false;
-                }
-                catch (IllegalStateException ex) {
-                    log.error("Couldn't create XChange {},\n{}", exchangeName, ex.getStackTrace());
-                    return false;
-                } catch (Exception ex) {
-                    log.error("Couldn't create XChange {},\n{}", exchangeName, ex.getStackTrace());
-                    return false;
-                }
-            }
+            xChange = ExchangeFactory.INSTANCE.createExchange(exchangeSpecification);
+        } catch (Exception ex) {
+            log.error("Couldn't create XChange {},\n{}", exchangeName, ex.getStackTrace());
+            throw new XChangeServiceException("Unknown exchange/exchange init failure, couldn't set properties with params: " + exchangeName, ex);
         }
+
+        log.debug("Adding new exchange {}, calling remote init manually.", exchangeName);
+        try {
+            xChange.remoteInit();
         }
-        catch (Exception ex) {
-            log.error("Couldn't create XChange {},\n{}", exchangeName, ex.getStackTrace());
-            return false;
+        catch(IOException ex) {
+            log.debug("IO ex on remoteInit {}.", ex.getMessage());
+            throw ex;
         }
-        return false;
+        catch(ExchangeException ex) {
+            log.debug("exchange exception ex on remoteInit {}.", ex.getMessage());
+            throw ex;
+        }
+        log.debug("Added exchange " + exchangeName);
+        return xChange;
     }
 
-    //@Override
-    private boolean setProperties(ExchangeCredentials exchangeCredentials) {
+    private org.knowm.xchange.Exchange createExchange(ExchangeCredentials exchangeCredentials) throws XChangeServiceException, IOException {
 
         log.debug("\nGiven Parameters for exchange: " + exchangeCredentials.getExchange());
-        for (Exchange exchange : Exchange.values()) {
-            if (exchange.getExchangeClassName().contains(exchangeCredentials.getExchange())) {
+        Exchange exchange = resolve(exchangeCredentials.getExchange());
 
-                Optional<org.knowm.xchange.Exchange> exchangeTry =
-                    Optional.ofNullable(exchangeMap.get(exchangeCredentials.getExchange()));
+        // never apply credentials to the shared public instance, always build a dedicated one.
+        boolean needsRemoteInit = exchangeCredsPool.takeStale(exchangeCredentials);
+        ExchangeMetaData publicMetaData = null;
+        if (!needsRemoteInit) {
+            publicMetaData = getExchangeMetaData(exchangeCredentials.getExchange());
+        }
 
-                try {
-                    ExchangeSpecification exchangeSpecification = createExchangeSpecification(exchange, exchangeCredentials);
-                    if (exchangeTry.isPresent()) {
-                        log.debug("Using new specification on existing exchange.");
-                        exchangeTry.get().applySpecification(exchangeSpecification);
-                        exchangeCredsMap.put(exchangeCredentials, exchangeTry.get());
-                        log.debug("apply specification " + exchange);
-                    }
-                    else {
-                        log.debug("Creating exchange {}", exchange);
-                        org.knowm.xchange.Exchange xChange = ExchangeFactory.INSTANCE.createExchange(exchangeSpecification);
-                        log.debug("Have exchange {}, now applying specification", exchange);
-                        exchangeCredsMap.put(exchangeCredentials, xChange);
-                        log.debug("Added exchange " + exchange);
-                    }
-                    return true;
-                } catch (ExchangeException ee) {
-                    log.error("Couldn't create XChange " + exchange, ee);
-                    return false;
-                }
-            }
+        ExchangeSpecification exchangeSpecification = createExchangeSpecification(exchange, exchangeCredentials);
+        exchangeSpecification.setShouldLoadRemoteMetaData(false);
+        log.debug("Creating exchange {}", exchange);
+        org.knowm.xchange.Exchange xChange = ExchangeFactory.INSTANCE.createExchange(exchangeSpecification);
+
+        if (needsRemoteInit || !shareMetaData(xChange, publicMetaData)) {
+            log.debug("Calling remote init on credentialed exchange {}.", exchange);
+            xChange.remoteInit();
+        }
+        log.debug("Added exchange " + exchange);
+        return xChange;
+    }
+
+    @Override
+    public void invalidate(ExchangeCredentials exchangeCredentials) {
+        if (exchangeCredsPool.invalidate(exchangeCredentials)) {
+            log.debug("Dropped credentialed exchange {}, next call re-initializes.", exchangeCredentials.getExchange());
         }
-        return false;
     }
 
     protected ExchangeSpecification createExchangeSpecification(Exchange exchange) {
         String exchangeClassName = exchange.getExchangeClassName();
         ExchangeSpecification exchangeSpecification = new ExchangeSpecification(exchangeClassName);
+        // remoteInit is called explicitly once the instance is registered.
+        exchangeSpecification.setShouldLoadRemoteMetaData(false);
 
         return exchangeSpecification;
     }
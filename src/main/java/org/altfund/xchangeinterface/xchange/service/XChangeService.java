@@ -25,7 +25,7 @@ import java.util.List;
 public interface XChangeService {
 
     ObjectNode getExchangeCurrencies(String exhange);
-    ObjectNode getTickers(String exchange);
+    ObjectNode getTickers(String exchange, Long maxAgeMillis);
     ObjectNode getOrderBooks(Map<String, String> params);
     ObjectNode getExchangeSymbolMetaData(Map<String, String> params);
     ObjectNode getExchangeBalances(ExchangeCredentials params);
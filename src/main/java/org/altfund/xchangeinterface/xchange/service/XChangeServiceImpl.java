@@ -27,6 +27,8 @@ import org.knowm.xchange.dto.trade.LimitOrder;
 import org.knowm.xchange.dto.marketdata.OrderBook;
 import org.knowm.xchange.dto.account.FundingRecord;
 import org.knowm.xchange.service.account.AccountService;
+import org.altfund.xchangeinterface.xchange.model.ExchangeCapabilities;
+import org.altfund.xchangeinterface.xchange.model.ExchangeMetaDataSnapshot;
 import org.altfund.xchangeinterface.xchange.model.GetOrdersParams;
 import org.altfund.xchangeinterface.xchange.model.OrderStatus;
 import org.altfund.xchangeinterface.xchange.model.OrderStatusTypes;
@@ -34,6 +36,7 @@ import static org.altfund.xchangeinterface.xchange.model.OrderStatusTypes.PLACED
 import static org.altfund.xchangeinterface.xchange.model.OrderStatusTypes.CANCELED;
 import static org.altfund.xchangeinterface.xchange.model.OrderStatusTypes.CANCEL_FAILED;
 import static org.altfund.xchangeinterface.xchange.model.OrderStatusTypes.PROCESSING_FAILED;
+import static org.altfund.xchangeinterface.xchange.model.OrderStatusTypes.GENERAL_EXCHANGE_ERROR;
 import org.knowm.xchange.service.trade.params.TradeHistoryParamsAll;
 import org.knowm.xchange.service.trade.params.orders.OpenOrdersParams;
 import org.knowm.xchange.service.trade.params.orders.OpenOrdersParamCurrencyPair;
@@ -46,8 +49,10 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import org.altfund.xchangeinterface.exception.CancelOrderException;
 
 import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.util.Timestamped;
 import org.altfund.xchangeinterface.util.KWayMerge;
 import org.altfund.xchangeinterface.xchange.model.Exchange;
+import org.altfund.xchangeinterface.xchange.model.CompactOrderBook;
 import org.altfund.xchangeinterface.xchange.model.CurrenciesOnExchange;
 import org.altfund.xchangeinterface.xchange.model.ExchangeCredentials;
 import org.altfund.xchangeinterface.xchange.model.LimitOrderExchange;
@@ -63,15 +68,19 @@ import org.altfund.xchangeinterface.xchange.service.util.ExtractExchangeTickers;
 import org.altfund.xchangeinterface.xchange.service.util.ExtractOrderBooks;
 import org.altfund.xchangeinterface.xchange.service.util.ExtractExchangeSymbolMetaData;
 import org.altfund.xchangeinterface.xchange.service.util.ExtractBalances;
+import org.altfund.xchangeinterface.xchange.service.util.ExchangeScale;
 import org.altfund.xchangeinterface.xchange.service.util.LimitOrderPlacer;
+import org.altfund.xchangeinterface.xchange.service.util.OrderBookFilter;
+import org.altfund.xchangeinterface.xchange.service.util.OrderBookSquasher;
 
 import java.io.IOException;
 import java.lang.NoSuchMethodException;
+import org.knowm.xchange.exceptions.ExchangeException;
 import java.util.NoSuchElementException;
+import org.altfund.xchangeinterface.xchange.service.exceptions.CircuitOpenException;
+import org.altfund.xchangeinterface.xchange.service.exceptions.RateLimitExceededException;
 import org.altfund.xchangeinterface.xchange.service.exceptions.XChangeServiceException;
 
-//reflection
-import java.lang.reflect.Method;
 
 /**
  * altfund
@@ -84,13 +93,25 @@ public class XChangeServiceImpl implements XChangeService {
     private final KWayMerge kWayMerge;
     private final LimitOrderPlacer limitOrderPlacer;
     private final DozerBeanMapper dozerBeanMapper;
+    private final CapabilityMatrix capabilityMatrix;
+    private final MarketDataFetcher marketDataFetcher;
+    private final OrderBookSubscriptions orderBookSubscriptions;
+    private final ExchangeScale exchangeScale;
 
     public XChangeServiceImpl(XChangeFactory xChangeFactory,
             JsonHelper jh,
             LimitOrderPlacer limitOrderPlacer,
             DozerBeanMapper dozerBeanMapper,
-            KWayMerge kWayMerge) {
+            KWayMerge kWayMerge,
+            CapabilityMatrix capabilityMatrix,
+            MarketDataFetcher marketDataFetcher,
+            OrderBookSubscriptions orderBookSubscriptions,
+            ExchangeScale exchangeScale) {
         this.xChangeFactory = xChangeFactory;
+        this.exchangeScale = exchangeScale;
+        this.capabilityMatrix = capabilityMatrix;
+        this.marketDataFetcher = marketDataFetcher;
+        this.orderBookSubscriptions = orderBookSubscriptions;
         this.jh = jh;
         this.limitOrderPlacer = limitOrderPlacer;
         this.dozerBeanMapper = dozerBeanMapper;
@@ -156,7 +177,7 @@ public class XChangeServiceImpl implements XChangeService {
         return cpList.get();
     }
 
-    public ObjectNode getTickers(String exchange) {
+    public ObjectNode getTickers(String exchange, Long maxAgeMillis) {
         Optional<List<CurrencyPair>>  currencyPairs;
         Optional<MarketDataService>  marketDataService;
         ObjectNode tickerMap = jh.getObjectNode();
@@ -176,7 +197,8 @@ public class XChangeServiceImpl implements XChangeService {
                 return errorMap;
             }
 
-            tickerMap =  ExtractExchangeTickers.toJson(currencyPairs.get(), marketDataService.get(), exchange, jh);
+            List<Object> tickers = marketDataFetcher.getTickers(exchange, marketDataService.get(), currencyPairs.get(), maxAgeMillis);
+            tickerMap =  ExtractExchangeTickers.toJson(currencyPairs.get(), tickers, exchange, jh);
         }
         catch (IOException ex) {
             // import java.time.LocalDateTime;
@@ -205,7 +227,15 @@ public class XChangeServiceImpl implements XChangeService {
             }
 
             //params for this method are needed because it has "base_currency" and "quote_currency"
-            orderBookMap =  ExtractOrderBooks.toJson(marketDataService.get(), params, jh);
+            CurrencyPair cp = new CurrencyPair(params.get("base_currency"), params.get("quote_currency"));
+            Long maxAge = OrderBookFilter.maxAge(params);
+            // depth counts buckets when grouping, the exchange can't cut those for us.
+            boolean bucketed = params.containsKey("bucket") || params.containsKey("bucket_bps");
+            Integer depth = bucketed ? null : OrderBookFilter.depth(params);
+            orderBookMap =  ExtractOrderBooks.toJson(
+                    () -> getOrderBook(params.get("exchange"), marketDataService.get(), cp, maxAge, depth),
+                    params,
+                    jh);
         }
         catch (XChangeServiceException ex) {
             // import java.time.LocalDateTime;
@@ -222,45 +252,87 @@ public class XChangeServiceImpl implements XChangeService {
 
     @Override
     public String getAggregateOrderBooks(MarketByExchanges marketByExchanges) throws Exception {
-        List<OrderBook> books = null;
         MarketDataService marketDataService = null;
         List<String> exchanges = marketByExchanges.getExchanges();
-        ArrayList<List<LimitOrder>> asks = new ArrayList<List<LimitOrder>>();
-        ArrayList<String> askExchanges = new ArrayList<String>();
-        ArrayList<List<LimitOrder>> bids = new ArrayList<List<LimitOrder>>();
-        ArrayList<String> bidExchanges = new ArrayList<String>();
+        List<String> fetchedExchanges = new ArrayList<String>();
+        ObjectNode fetchedAt = jh.getObjectNode();
         List<LimitOrderExchange> aggregatedAsks = new ArrayList<LimitOrderExchange>();
         List<LimitOrderExchange> aggregatedBids = new ArrayList<LimitOrderExchange>();
-        OrderBook ob = null;
+        Timestamped<OrderBook> ob = null;
         ObjectNode orderBookMap = jh.getObjectNode();
         ObjectNode errorMap = jh.getObjectNode();
 
         CurrencyPair cp = new CurrencyPair(
                 marketByExchanges.getBaseCurrency(),
                 marketByExchanges.getQuoteCurrency());
+        Integer depth = marketByExchanges.getDepth();
+        // depth counts buckets when grouping, the exchange can't cut those for us.
+        Integer fetchDepth = marketByExchanges.getBucket() != null || marketByExchanges.getBucketBps() != null ? null : depth;
+        List<OrderBook> fetched = new ArrayList<OrderBook>();
+        List<Boolean> offHeap = new ArrayList<Boolean>();
 
         try {
             log.debug("Begin extract MarketDataService(s)");
             for (int i = 0; i < exchanges.size(); i++) {
                 try {
-                    log.debug("Get MarketDataService for {}", exchanges.get(i));
-                    marketDataService = xChangeFactory.getMarketDataService(exchanges.get(i));
-                    ob = ExtractOrderBooks.raw(marketDataService, cp, exchanges.get(i));
-
-                    asks.add(ob.getAsks());
-                    askExchanges.add(exchanges.get(i));
-                    bids.add(ob.getBids());
-                    bidExchanges.add(exchanges.get(i));
+                    // books polled off-heap stay there, only their best levels are read for the mid.
+                    ob = orderBookSubscriptions.read(exchanges.get(i), cp, marketByExchanges.getMaxAge(), fetchDepth,
+                            book -> book.withSides(book.getAsks().head(1), book.getBids().head(1)).toOrderBook());
+                    boolean stored = ob != null;
+                    if (!stored) {
+                        log.debug("Get MarketDataService for {}", exchanges.get(i));
+                        marketDataService = xChangeFactory.getMarketDataService(exchanges.get(i));
+                        ob = getOrderBook(exchanges.get(i), marketDataService, cp, marketByExchanges.getMaxAge(), fetchDepth);
+                    }
+
+                    fetched.add(ob.getValue());
+                    offHeap.add(stored);
+                    fetchedExchanges.add(exchanges.get(i));
+                    fetchedAt.put(exchanges.get(i), ob.getFetchedAt());
                 }
                 catch (Exception ex) {
                     log.debug("Get MarketDataService for {} FAILED.", exchanges.get(i));
                     ex.printStackTrace();
                 }
             }
-            aggregatedAsks = kWayMerge.mergeKLists(asks, askExchanges);
-            aggregatedBids = kWayMerge.mergeKLists(bids, bidExchanges);
+            // the band is around the mid of the combined book, the best depth levels of the
+            // merged book are among the best depth levels of each exchange.
+            BigDecimal mid = OrderBookFilter.mid(fetched);
+            BigDecimal ceiling = OrderBookFilter.ceiling(mid, marketByExchanges.getPriceBand());
+            BigDecimal floor = OrderBookFilter.floor(mid, marketByExchanges.getPriceBand());
+            // buckets are per exchange so every level keeps its exchange.
+            BigDecimal bucketSize = OrderBookFilter.bucketSize(marketByExchanges.getBucket(), marketByExchanges.getBucketBps(), mid);
+            List<CompactOrderBook> books = new ArrayList<CompactOrderBook>();
+            List<String> bookExchanges = new ArrayList<String>();
+            for (int i = 0; i < fetched.size(); i++) {
+                CompactOrderBook book;
+                try {
+                    if (offHeap.get(i)) {
+                        Timestamped<CompactOrderBook> cut = orderBookSubscriptions.read(fetchedExchanges.get(i), cp, Long.MAX_VALUE, fetchDepth,
+                                view -> cut(view, bucketSize, depth, ceiling, floor));
+                        if (cut == null) {
+                            log.debug("Order book of {} expired while aggregating.", fetchedExchanges.get(i));
+                            continue;
+                        }
+                        book = cut.getValue();
+                    }
+                    else {
+                        book = cut(compact(fetched.get(i), fetchedExchanges.get(i), cp), bucketSize, depth, ceiling, floor);
+                    }
+                }
+                catch (ArithmeticException ex) {
+                    // prices or amounts out of long range at the book's scales, leave the exchange out.
+                    log.warn("Order book {} of {} left out of the aggregate: {}", cp, fetchedExchanges.get(i), ex.getMessage());
+                    continue;
+                }
+                books.add(book);
+                bookExchanges.add(fetchedExchanges.get(i));
+            }
+            aggregatedAsks = kWayMerge.mergeCompact(books, bookExchanges, org.knowm.xchange.dto.Order.OrderType.ASK, depth);
+            aggregatedBids = kWayMerge.mergeCompact(books, bookExchanges, org.knowm.xchange.dto.Order.OrderType.BID, depth);
             orderBookMap.put("ASKS", jh.getObjectMapper().writeValueAsString(aggregatedAsks));
             orderBookMap.put("BIDS", jh.getObjectMapper().writeValueAsString(aggregatedBids));
+            orderBookMap.set("FETCHED_AT", fetchedAt);
             //params for this method are needed because it has "base_currency" and "quote_currency"
         }
         /*
@@ -285,16 +357,54 @@ public class XChangeServiceImpl implements XChangeService {
         return jh.getObjectMapper().writeValueAsString(orderBookMap);
     }
 
+    /*
+     * Subscribed books are read from memory if they hold depth levels, everything else goes
+     * through the cache.
+     */
+    private Timestamped<OrderBook> getOrderBook(String exchange, MarketDataService marketDataService, CurrencyPair cp, Long maxAgeMillis, Integer depth) throws Exception {
+        Timestamped<OrderBook> subscribed = orderBookSubscriptions.read(exchange, cp, maxAgeMillis, depth);
+        if (subscribed != null) {
+            return subscribed;
+        }
+        return marketDataFetcher.getOrderBook(exchange, marketDataService, cp, maxAgeMillis, depth);
+    }
+
+    /*
+     * orderBook as scaled longs at the exchange's price and amount scales, or at the scales
+     * the book itself needs if there is no metadata.
+     */
+    private CompactOrderBook compact(OrderBook orderBook, String exchange, CurrencyPair cp) {
+        ExchangeMetaDataSnapshot snapshot = null;
+        try {
+            snapshot = xChangeFactory.getExchangeMetaDataSnapshot(exchange);
+        }
+        catch (Exception ex) {
+            log.debug("No scales for {} on {}: {}", cp, exchange, ex.getMessage());
+        }
+        return exchangeScale.compact(orderBook, cp, snapshot);
+    }
+
+    /*
+     * book grouped into buckets if bucketSize is set and cut to depth and the price band, as a
+     * heap copy so it may come from an off-heap view.
+     */
+    private static CompactOrderBook cut(CompactOrderBook book, BigDecimal bucketSize, Integer depth, BigDecimal ceiling, BigDecimal floor) {
+        if (bucketSize != null) {
+            book = OrderBookSquasher.byBucket(book, bucketSize);
+        }
+        return OrderBookFilter.apply(book, depth, ceiling, floor).copy();
+    }
+
     @Override
     public ObjectNode getExchangeSymbolMetaData(Map<String, String> params) {
-        Optional<ExchangeMetaData>  metaData;
+        Optional<ExchangeMetaDataSnapshot>  metaData;
         ObjectNode exchangeSymbolToMetaData = jh.getObjectNode();
         ObjectNode errorMap = jh.getObjectNode();
         log.debug("params {} ", params);
 
         try {
             //xChangeFactory.setProperties(params.get("exchange"));
-            metaData = Optional.ofNullable(xChangeFactory.getExchangeMetaData(params.get("exchange")));
+            metaData = Optional.ofNullable(xChangeFactory.getExchangeMetaDataSnapshot(params.get("exchange")));
             log.debug("metadata {} for {}", metaData, params);
             if (!metaData.isPresent()){
                 errorMap.put("ERROR", "No such exchange " + params.get("exchange"));
@@ -338,6 +448,7 @@ public class XChangeServiceImpl implements XChangeService {
                     return errorMap;
                 }
             } catch (Exception ex) {
+                invalidateOnExchangeError(exchangeCredentials, ex);
                 errorMap.put("ERROR", exchangeCredentials.getExchange() + ex.toString() + ": " + ex.getMessage());
                 return errorMap;
             }
@@ -377,6 +488,7 @@ public class XChangeServiceImpl implements XChangeService {
             orderResponse = tradeService.cancelOrder(order.getOrderId());
         }
         catch (Exception e) {
+            invalidateOnExchangeError(exchangeCredentials, e);
             log.debug("could not cancel order {}", e);
             throw new CancelOrderException("Failed to cancel order, order id does not exist or internal exchange error: " + e.getMessage());
         }
@@ -438,54 +550,27 @@ public class XChangeServiceImpl implements XChangeService {
         return response;
     }
 
+    /*
+     * Answered from the capability matrix probed at startup, a null exchange returns every
+     * catalogued exchange.
+     */
     @Override
     public String isFeasible(String exchange) throws Exception {
-        ExchangeCredentials exchangeCredentials = new ExchangeCredentials(exchange, "bogus", "bogus", "bogus");
-        ObjectNode retMap = jh.getObjectNode();
         ObjectNode exMap = jh.getObjectNode();
-        String currentMethod = "";
 
-        Method[] methods = XChangeFactory.class.getMethods();
-        Class[] parameterTypes = null;
-
-        try {
-            for (Method method : methods) {
-                currentMethod = method.getName();
-                log.debug("curr method {}.", currentMethod);
-                Optional<Object> returnValue;
-                parameterTypes = method.getParameterTypes();
-                log.debug("param types len {}.", parameterTypes.length);
-                if (parameterTypes[0] == String.class) {
-                    log.debug("string type");
-                    returnValue = Optional.ofNullable(method.invoke(xChangeFactory, exchange));
-                } else {
-                    log.debug("creds type");
-                    returnValue = Optional.ofNullable(method.invoke(xChangeFactory, exchangeCredentials));
-                }
-
-                if (returnValue.isPresent()) {
-                    retMap.put(currentMethod, "true");
-                }
-                else {
-                    retMap.put(currentMethod, "false");
-                }
+        if (exchange == null || exchange.isEmpty()) {
+            for (ExchangeCapabilities capabilities : capabilityMatrix.getAll().values()) {
+                exMap.set(capabilities.getExchange().name().toLowerCase(), capabilityMatrix.toJson(capabilities, jh));
             }
-            exMap.put(exchange, retMap);
-        }
-        catch (Exception e) {
-            exMap.put("ERROR", "failed to process " + exchange);
-            exMap.put(exchange, retMap);
+            return jh.getObjectMapper().writeValueAsString(exMap);
         }
 
-        /*
-           catch (XChangeServiceException ex) {
-           retMap.put(currentMethod, "false");
-           }
-           catch (IOException ex) {
-           retMap.put(currentMethod, "false");
-           }
-           retMap.put(currentMethod, "true");
-           */
+        Optional<ExchangeCapabilities> capabilities = capabilityMatrix.get(exchange);
+        if (!capabilities.isPresent()) {
+            exMap.put("ERROR", "No such exchange " + exchange);
+            return jh.getObjectMapper().writeValueAsString(exMap);
+        }
+        exMap.set(exchange, capabilityMatrix.toJson(capabilities.get(), jh));
         return jh.getObjectMapper().writeValueAsString(exMap);
     }
 
@@ -605,6 +690,7 @@ return "{\"Success\":\"all methods supported}";
             //scale = xChangeFactory.getExchangeScale(order.getExchangeCredentials(), currencyPair);
         }
         catch (Exception e){
+            invalidateOnExchangeError(params.getExchangeCredentials(), e);
             log.debug("Error from trade service resulting from calling getOrder: {}", e);
             throw e;
         }
@@ -637,7 +723,7 @@ return "{\"Success\":\"all methods supported}";
 
         try {
             tradeService = xChangeFactory.getTradeService(exchangeCredentials);
-            org.knowm.xchange.Exchange exchange = xChangeFactory.getExchange(exchangeCredentials);
+            ExchangeMetaDataSnapshot snapshot = xChangeFactory.getExchangeMetaDataSnapshot(exchangeCredentials.getExchange());
             currencyPair = new CurrencyPair(
                     order.getOrderSpec().getBaseCurrency().name(),
                     order.getOrderSpec().getQuoteCurrency().name()
@@ -645,7 +731,12 @@ return "{\"Success\":\"all methods supported}";
 
             //scale = xChangeFactory.getExchangeScale(order.getExchangeCredentials(), currencyPair);
 
-            orderResponse = limitOrderPlacer.placeOrder(order, tradeService, currencyPair, exchange, jh);
+            orderResponse = limitOrderPlacer.placeOrder(order, tradeService, currencyPair, snapshot, jh);
+            if (orderResponse.getOrderStatus() != null
+                    && orderResponse.getOrderStatus().hasStatus(GENERAL_EXCHANGE_ERROR)
+                    && ExtractExceptions.isStaleSession(orderResponse.getOrderStatus().getOrderStatusPhrase())) {
+                xChangeFactory.invalidate(exchangeCredentials);
+            }
             /*
                if (orderResponse.isRetryable()) {
             //TODO is using same orderResponse wrong?
@@ -668,6 +759,7 @@ return "{\"Success\":\"all methods supported}";
            }
            */
         catch (Exception e){
+            invalidateOnExchangeError(exchangeCredentials, e);
             throw e;
         }
         log.debug("Order Response returning");
@@ -704,6 +796,7 @@ return "{\"Success\":\"all methods supported}";
 
         }
         catch (Exception ex) {
+            invalidateOnExchangeError(exchangeCredentials, ex);
             log.debug("{}: {}", ex , ex.getMessage());
             throw ex;
         }
@@ -746,6 +839,7 @@ return "{\"Success\":\"all methods supported}";
 
         }
         catch (Exception ex) {
+            invalidateOnExchangeError(exchangeCredentials, ex);
             log.warn("{}: {}. \n\n\n {}", "fundinghistoryerror" , ex.getMessage(), ex.getStackTrace());
             throw ex;
         }
@@ -795,7 +889,7 @@ return "{\"Success\":\"all methods supported}";
             if (exchangeCredentials.getExchange().toLowerCase().equals("binance")) {
                 //TODO if is binance OR perhaps if it is this DefaultOpenOrdersParamCurrencyPair
                 //currencyPair = new CurrencyPair("XRP", "BTC");
-                ExchangeMetaData metaData = xChangeFactory.getExchangeMetaData(exchangeCredentials.getExchange());
+                ExchangeMetaDataSnapshot metaData = xChangeFactory.getExchangeMetaDataSnapshot(exchangeCredentials.getExchange());
                 Map<CurrencyPair, CurrencyPairMetaData> currencyPairsMap = metaData.getCurrencyPairs();
                 List<CurrencyPair> currencyPairs = new ArrayList(currencyPairsMap.keySet());
                 OpenOrdersParamCurrencyPair newKnowmOpenOrderParms = (OpenOrdersParamCurrencyPair)knowmOpenOrderParms;
@@ -831,6 +925,7 @@ return "{\"Success\":\"all methods supported}";
 
         }
         catch (Exception e) {
+            invalidateOnExchangeError(exchangeCredentials, e);
             throw e;
         }
         /*
@@ -851,7 +946,7 @@ return "{\"Success\":\"all methods supported}";
     @Override
     public String getAvailableMarkets(List<CurrenciesOnExchange> currenciesOnExchanges) throws Exception {
         String response = "";
-        ExchangeMetaData metaData = null;
+        ExchangeMetaDataSnapshot metaData = null;
         Map<CurrencyPair, List<String>> marketByExchanges = new HashMap<CurrencyPair, List<String>>();
         Map<CurrencyPair, CurrencyPairMetaData> cpMetaData = null;
         List<String> currencies = null;
@@ -863,7 +958,7 @@ return "{\"Success\":\"all methods supported}";
             log.debug("curr one xchanges size {}.", currenciesOnExchanges.size());
             for (int i = 0; i < currenciesOnExchanges.size(); i++) {
                 currExchange = currenciesOnExchanges.get(i).getExchange();
-                metaData = xChangeFactory.getExchangeMetaData(currExchange);
+                metaData = xChangeFactory.getExchangeMetaDataSnapshot(currExchange);
                 cpMetaData = metaData.getCurrencyPairs();
                 currencies = currenciesOnExchanges.get(i).getCurrencies();
                 int numCurrencies = currencies.size();
@@ -904,4 +999,20 @@ return "{\"Success\":\"all methods supported}";
         response = jh.getObjectMapper().writeValueAsString(marketByExchanges);
         return response;
     }
+
+    /*
+     * Auth (nonce, signature) and stale metadata errors surface as ExchangeException, drop
+     * the cached credentialed exchange so the next call re-initializes it. Any other error,
+     * a rejected order or an unknown order id, leaves the pooled exchange alone.
+     */
+    private void invalidateOnExchangeError(ExchangeCredentials exchangeCredentials, Exception e) {
+        // local rate limit and circuit breaker rejections say nothing about the credentials.
+        if (exchangeCredentials != null
+                && e instanceof ExchangeException
+                && !(e instanceof RateLimitExceededException)
+                && !(e instanceof CircuitOpenException)
+                && ExtractExceptions.isStaleSession(e)) {
+            xChangeFactory.invalidate(exchangeCredentials);
+        }
+    }
 }
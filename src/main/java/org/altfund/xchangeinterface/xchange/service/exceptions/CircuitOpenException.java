@@ -0,0 +1,14 @@
+package org.altfund.xchangeinterface.xchange.service.exceptions;
+
+import org.knowm.xchange.exceptions.ExchangeException;
+
+/**
+ * Thrown instead of calling the exchange while its circuit breaker is open.
+ */
+public class CircuitOpenException extends ExchangeException {
+
+  public CircuitOpenException(String message) {
+    super(message);
+  }
+
+}
@@ -0,0 +1,14 @@
+package org.altfund.xchangeinterface.xchange.service.exceptions;
+
+import org.knowm.xchange.exceptions.ExchangeException;
+
+/**
+ * Thrown instead of calling the exchange when its rate limit has no tokens left in time.
+ */
+public class RateLimitExceededException extends ExchangeException {
+
+  public RateLimitExceededException(String message) {
+    super(message);
+  }
+
+}
@@ -0,0 +1,182 @@
+package org.altfund.xchangeinterface.xchange.service.stream;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order;
+import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.trade.LimitOrder;
+
+import org.altfund.xchangeinterface.util.Timestamped;
+import org.altfund.xchangeinterface.xchange.model.LevelUpdate;
+
+/**
+ * Order book of one market kept up to date from level updates. The book starts out of sync
+ * and a REST snapshot syncs it. Updates that arrive while it is out of sync are buffered and
+ * replayed on top of the snapshot: amounts are absolute level totals, so replaying updates the
+ * snapshot already covers is harmless, as long as buffering started before the snapshot was
+ * requested. The last replayed update sets the sequence baseline.
+ *
+ * An update that skips a sequence number puts the book out of sync again until the next
+ * snapshot. A gap or overflow in the buffer while a snapshot is in flight restarts the buffer
+ * and makes reset() reject that snapshot, since it may predate the buffer.
+ */
+public class LocalOrderBook {
+
+    private static final int MAX_BUFFERED = 10000;
+
+    private final CurrencyPair currencyPair;
+    private final TreeMap<BigDecimal, BigDecimal> asks = new TreeMap<>();
+    private final TreeMap<BigDecimal, BigDecimal> bids = new TreeMap<>(Collections.reverseOrder());
+    private final List<LevelUpdate> buffered = new ArrayList<>();
+
+    private boolean synced;
+    private boolean resyncing;
+    // the snapshot in flight may predate the buffered updates.
+    private boolean bufferRestarted;
+    // sequence of the last applied update, -1 until the first update after a snapshot.
+    private long sequence = -1;
+    private long updatedAt;
+
+    public LocalOrderBook(CurrencyPair currencyPair) {
+        this.currencyPair = currencyPair;
+    }
+
+    /*
+     * Applies update, false if it revealed a gap and the book needs a new snapshot.
+     */
+    public synchronized boolean apply(LevelUpdate update) {
+        if (!synced) {
+            buffer(update);
+            return true;
+        }
+        if (sequence >= 0 && update.getSequence() <= sequence) {
+            // replayed or duplicate update.
+            return true;
+        }
+        if (sequence >= 0 && update.getSequence() != sequence + 1) {
+            synced = false;
+            restartBuffer(update);
+            return false;
+        }
+        put(update);
+        sequence = update.getSequence();
+        updatedAt = System.currentTimeMillis();
+        return true;
+    }
+
+    /*
+     * True if the caller should fetch a snapshot, false if one is already on its way.
+     */
+    public synchronized boolean beginResync() {
+        synced = false;
+        if (resyncing) {
+            return false;
+        }
+        resyncing = true;
+        bufferRestarted = false;
+        return true;
+    }
+
+    /*
+     * Syncs the book from snapshot and the buffered updates. False if the snapshot may be
+     * older than the buffer, the book stays out of sync and needs another snapshot.
+     */
+    public synchronized boolean reset(OrderBook snapshot) {
+        resyncing = false;
+        if (bufferRestarted) {
+            bufferRestarted = false;
+            return false;
+        }
+        asks.clear();
+        bids.clear();
+        for (LimitOrder ask : snapshot.getAsks()) {
+            asks.merge(ask.getLimitPrice(), ask.getOriginalAmount(), BigDecimal::add);
+        }
+        for (LimitOrder bid : snapshot.getBids()) {
+            bids.merge(bid.getLimitPrice(), bid.getOriginalAmount(), BigDecimal::add);
+        }
+        sequence = -1;
+        for (LevelUpdate update : buffered) {
+            put(update);
+            sequence = update.getSequence();
+        }
+        buffered.clear();
+        synced = true;
+        updatedAt = System.currentTimeMillis();
+        return true;
+    }
+
+    public synchronized void resyncFailed() {
+        resyncing = false;
+    }
+
+    public synchronized void desync() {
+        synced = false;
+        // updates were lost while disconnected.
+        buffered.clear();
+        bufferRestarted = resyncing;
+    }
+
+    public synchronized boolean isSynced() {
+        return synced;
+    }
+
+    /*
+     * Copy of the book stamped with the time of its last change, null while out of sync.
+     */
+    public synchronized Timestamped<OrderBook> snapshot() {
+        if (!synced) {
+            return null;
+        }
+        return new Timestamped<>(
+                new OrderBook(new Date(updatedAt), orders(asks, Order.OrderType.ASK), orders(bids, Order.OrderType.BID)),
+                updatedAt);
+    }
+
+    private void put(LevelUpdate update) {
+        TreeMap<BigDecimal, BigDecimal> side = update.getSide() == Order.OrderType.ASK ? asks : bids;
+        if (update.getAmount().signum() == 0) {
+            side.remove(update.getPrice());
+        }
+        else {
+            side.put(update.getPrice(), update.getAmount());
+        }
+    }
+
+    private void buffer(LevelUpdate update) {
+        if (buffered.isEmpty()) {
+            buffered.add(update);
+            return;
+        }
+        long last = buffered.get(buffered.size() - 1).getSequence();
+        if (update.getSequence() <= last) {
+            return;
+        }
+        if (update.getSequence() != last + 1 || buffered.size() >= MAX_BUFFERED) {
+            restartBuffer(update);
+            return;
+        }
+        buffered.add(update);
+    }
+
+    private void restartBuffer(LevelUpdate update) {
+        buffered.clear();
+        buffered.add(update);
+        bufferRestarted = resyncing;
+    }
+
+    private List<LimitOrder> orders(TreeMap<BigDecimal, BigDecimal> side, Order.OrderType type) {
+        List<LimitOrder> orders = new ArrayList<>(side.size());
+        for (Map.Entry<BigDecimal, BigDecimal> level : side.entrySet()) {
+            orders.add(new LimitOrder(type, level.getValue(), currencyPair, null, null, level.getKey()));
+        }
+        return orders;
+    }
+}
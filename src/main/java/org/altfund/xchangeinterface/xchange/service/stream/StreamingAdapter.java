@@ -0,0 +1,30 @@
+package org.altfund.xchangeinterface.xchange.service.stream;
+
+import java.io.IOException;
+
+import org.knowm.xchange.currency.CurrencyPair;
+
+import org.altfund.xchangeinterface.xchange.model.LevelUpdate;
+
+/**
+ * Connection to the market data stream of one exchange. Implementations translate the
+ * exchange's messages into LevelUpdates and hand them to the listener on their own thread,
+ * a dropped connection is reported once through onDisconnect.
+ */
+public interface StreamingAdapter {
+
+    interface Listener {
+        void onUpdate(LevelUpdate update);
+        void onDisconnect(Throwable cause);
+    }
+
+    void connect(Listener listener) throws IOException;
+
+    void subscribe(CurrencyPair currencyPair) throws IOException;
+
+    void unsubscribe(CurrencyPair currencyPair) throws IOException;
+
+    boolean isConnected();
+
+    void close();
+}
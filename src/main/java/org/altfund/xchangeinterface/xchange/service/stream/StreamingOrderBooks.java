@@ -0,0 +1,227 @@
+package org.altfund.xchangeinterface.xchange.service.stream;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.PropertyResolver;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.marketdata.OrderBook;
+
+import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.util.Timestamped;
+import org.altfund.xchangeinterface.xchange.model.LevelUpdate;
+import org.altfund.xchangeinterface.xchange.model.MarketKey;
+import org.altfund.xchangeinterface.xchange.service.ExchangeCatalog;
+import org.altfund.xchangeinterface.xchange.service.XChangeFactory;
+import org.altfund.xchangeinterface.xchange.service.util.ExtractOrderBooks;
+
+/**
+ * Order books maintained from streaming feeds. Exchanges with xchange.stream.[exchange].url
+ * set get one StreamingAdapter, every subscribed market a LocalOrderBook that is synced from a
+ * REST snapshot (ExtractOrderBooks.raw) plus the updates buffered while it was fetched, when
+ * it starts and after every sequence gap. A dropped connection puts the exchange's books out
+ * of sync and reconnects after reconnect-ms.
+ */
+@Slf4j
+public class StreamingOrderBooks implements DisposableBean {
+
+    private static final String PREFIX = "xchange.stream.";
+
+    private final PropertyResolver properties;
+    private final XChangeFactory xChangeFactory;
+    private final ExchangeCatalog exchangeCatalog;
+    private final long reconnectMillis;
+
+    private final ConcurrentMap<String, StreamingAdapter> adapters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<MarketKey, LocalOrderBook> books = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+
+    public StreamingOrderBooks(PropertyResolver properties, XChangeFactory xChangeFactory, ExchangeCatalog exchangeCatalog) {
+        this.properties = properties;
+        this.xChangeFactory = xChangeFactory;
+        this.exchangeCatalog = exchangeCatalog;
+        this.reconnectMillis = properties.getProperty(PREFIX + "reconnect-ms", Long.class, 5000L);
+        this.executor = Executors.newScheduledThreadPool(properties.getProperty(PREFIX + "snapshot-threads", Integer.class, 2), runnable -> {
+            Thread thread = new Thread(runnable, "orderbook-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean supports(String exchange) {
+        return url(exchangeCatalog.canonicalName(exchange)) != null;
+    }
+
+    public void subscribe(String exchange, CurrencyPair cp) throws Exception {
+        String exchangeName = exchangeCatalog.canonicalName(exchange);
+        MarketKey market = new MarketKey(exchangeName, cp);
+        LocalOrderBook created = new LocalOrderBook(cp);
+        if (books.putIfAbsent(market, created) != null) {
+            return;
+        }
+        try {
+            adapter(exchangeName).subscribe(cp);
+        }
+        catch (Exception ex) {
+            books.remove(market, created);
+            throw ex;
+        }
+        // updates are flowing now, the snapshot overlaps them.
+        resync(market, created);
+    }
+
+    public void unsubscribe(String exchange, CurrencyPair cp) {
+        String exchangeName = exchangeCatalog.canonicalName(exchange);
+        if (books.remove(new MarketKey(exchangeName, cp)) == null) {
+            return;
+        }
+        StreamingAdapter adapter = adapters.get(exchangeName);
+        if (adapter == null) {
+            return;
+        }
+        try {
+            adapter.unsubscribe(cp);
+        }
+        catch (Exception ex) {
+            log.debug("Unsubscribing {} from {} stream failed: {}", cp, exchangeName, ex.getMessage());
+        }
+    }
+
+    /*
+     * Streamed order book of cp on exchange while it is in sync, null otherwise or if it did
+     * not change for longer than maxAgeMillis.
+     */
+    public Timestamped<OrderBook> read(String exchange, CurrencyPair cp, Long maxAgeMillis) {
+        LocalOrderBook book = books.get(new MarketKey(exchangeCatalog.canonicalName(exchange), cp));
+        if (book == null) {
+            return null;
+        }
+        Timestamped<OrderBook> orderBook = book.snapshot();
+        if (orderBook == null || (maxAgeMillis != null && orderBook.getAgeMillis() > maxAgeMillis)) {
+            return null;
+        }
+        return orderBook;
+    }
+
+    public ObjectNode stats(JsonHelper jh) {
+        ObjectNode json = jh.getObjectNode();
+        for (Map.Entry<String, StreamingAdapter> adapter : adapters.entrySet()) {
+            json.put(adapter.getKey(), adapter.getValue().isConnected());
+        }
+        return json;
+    }
+
+    private StreamingAdapter adapter(String exchange) throws Exception {
+        StreamingAdapter adapter = adapters.get(exchange);
+        if (adapter != null) {
+            return adapter;
+        }
+        synchronized (adapters) {
+            adapter = adapters.get(exchange);
+            if (adapter == null) {
+                adapter = new WebSocketStreamingAdapter(exchange, URI.create(url(exchange)));
+                adapter.connect(listener(exchange));
+                adapters.put(exchange, adapter);
+            }
+            return adapter;
+        }
+    }
+
+    private StreamingAdapter.Listener listener(String exchange) {
+        return new StreamingAdapter.Listener() {
+            @Override
+            public void onUpdate(LevelUpdate update) {
+                MarketKey market = new MarketKey(exchange, update.getCurrencyPair());
+                LocalOrderBook book = books.get(market);
+                if (book != null && !book.apply(update)) {
+                    log.info("Sequence gap on {} {} at {}, taking a new snapshot.", exchange, update.getCurrencyPair(), update.getSequence());
+                    resync(market, book);
+                }
+            }
+
+            @Override
+            public void onDisconnect(Throwable cause) {
+                log.warn("{} stream disconnected: {}", exchange, cause.getMessage());
+                adapters.remove(exchange);
+                for (Map.Entry<MarketKey, LocalOrderBook> book : books.entrySet()) {
+                    if (book.getKey().getExchange().equals(exchange)) {
+                        book.getValue().desync();
+                    }
+                }
+                if (!executor.isShutdown()) {
+                    executor.schedule(() -> reconnect(exchange), reconnectMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        };
+    }
+
+    private void reconnect(String exchange) {
+        try {
+            StreamingAdapter adapter = adapter(exchange);
+            for (Map.Entry<MarketKey, LocalOrderBook> book : books.entrySet()) {
+                if (book.getKey().getExchange().equals(exchange)) {
+                    adapter.subscribe(book.getKey().getCurrencyPair());
+                    resync(book.getKey(), book.getValue());
+                }
+            }
+        }
+        catch (Exception ex) {
+            log.warn("Reconnecting to {} stream failed: {}", exchange, ex.getMessage());
+            adapters.remove(exchange);
+            executor.schedule(() -> reconnect(exchange), reconnectMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void resync(MarketKey market, LocalOrderBook book) {
+        if (!book.beginResync()) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                boolean synced = book.reset(ExtractOrderBooks.raw(
+                        xChangeFactory.getMarketDataService(market.getExchange()),
+                        market.getCurrencyPair(),
+                        market.getExchange(),
+                        null,
+                        exchangeCatalog.isPerOrderBook(market.getExchange())));
+                if (synced) {
+                    log.debug("Synced {} {} from a snapshot.", market.getExchange(), market.getCurrencyPair());
+                }
+                else {
+                    log.info("Snapshot of {} {} predates the buffered updates, taking another.", market.getExchange(), market.getCurrencyPair());
+                    resync(market, book);
+                }
+            }
+            catch (Exception ex) {
+                book.resyncFailed();
+                log.warn("Snapshot of {} {} failed, retrying: {}", market.getExchange(), market.getCurrencyPair(), ex.getMessage());
+                executor.schedule(() -> {
+                    if (books.get(market) == book) {
+                        resync(market, book);
+                    }
+                }, reconnectMillis, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    private String url(String exchange) {
+        return properties.getProperty(PREFIX + exchange + ".url");
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        for (StreamingAdapter adapter : adapters.values()) {
+            adapter.close();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.altfund.xchangeinterface.xchange.service.stream;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.CloseReason;
+import javax.websocket.ContainerProvider;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.Session;
+
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order;
+
+import org.altfund.xchangeinterface.xchange.model.LevelUpdate;
+
+/**
+ * StreamingAdapter over a plain websocket, using the javax.websocket client of the servlet
+ * container. Out of the box it speaks a minimal json protocol, which is also what a local
+ * fake server has to implement:
+ *
+ *   client: {"type": "subscribe", "pair": "BTC/USD"}, {"type": "unsubscribe", "pair": "BTC/USD"}
+ *   server: {"pair": "BTC/USD", "sequence": 42, "side": "bid", "price": "100.5", "amount": "2"}
+ *           or an array of such updates
+ *
+ * Exchange feeds with their own format override subscribeMessage, unsubscribeMessage and parse.
+ */
+@Slf4j
+public class WebSocketStreamingAdapter implements StreamingAdapter {
+
+    protected final ObjectMapper mapper = new ObjectMapper();
+
+    private final String exchange;
+    private final URI uri;
+    private volatile Session session;
+
+    public WebSocketStreamingAdapter(String exchange, URI uri) {
+        this.exchange = exchange;
+        this.uri = uri;
+    }
+
+    @Override
+    public void connect(Listener listener) throws IOException {
+        Endpoint endpoint = new Endpoint() {
+            @Override
+            public void onOpen(Session session, EndpointConfig config) {
+                session.addMessageHandler(new MessageHandler.Whole<String>() {
+                    @Override
+                    public void onMessage(String message) {
+                        try {
+                            for (LevelUpdate update : parse(message)) {
+                                listener.onUpdate(update);
+                            }
+                        }
+                        catch (IOException | RuntimeException ex) {
+                            log.warn("Unreadable {} stream message: {}", exchange, ex.getMessage());
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onClose(Session session, CloseReason closeReason) {
+                listener.onDisconnect(new IOException("Stream closed: " + closeReason.getReasonPhrase()));
+            }
+
+            @Override
+            public void onError(Session session, Throwable cause) {
+                log.warn("{} stream error: {}", exchange, cause.getMessage());
+            }
+        };
+        try {
+            session = ContainerProvider.getWebSocketContainer()
+                .connectToServer(endpoint, ClientEndpointConfig.Builder.create().build(), uri);
+            log.info("Connected to {} stream at {}.", exchange, uri);
+        }
+        catch (DeploymentException ex) {
+            throw new IOException("Could not connect to " + uri, ex);
+        }
+    }
+
+    @Override
+    public void subscribe(CurrencyPair currencyPair) throws IOException {
+        send(subscribeMessage(currencyPair));
+    }
+
+    @Override
+    public void unsubscribe(CurrencyPair currencyPair) throws IOException {
+        send(unsubscribeMessage(currencyPair));
+    }
+
+    @Override
+    public boolean isConnected() {
+        Session current = session;
+        return current != null && current.isOpen();
+    }
+
+    @Override
+    public void close() {
+        Session current = session;
+        if (current != null) {
+            try {
+                current.close();
+            }
+            catch (IOException ex) {
+                log.debug("Closing {} stream failed: {}", exchange, ex.getMessage());
+            }
+        }
+    }
+
+    protected String subscribeMessage(CurrencyPair currencyPair) {
+        return control("subscribe", currencyPair);
+    }
+
+    protected String unsubscribeMessage(CurrencyPair currencyPair) {
+        return control("unsubscribe", currencyPair);
+    }
+
+    protected List<LevelUpdate> parse(String message) throws IOException {
+        JsonNode json = mapper.readTree(message);
+        List<LevelUpdate> updates = new ArrayList<>();
+        if (json.isArray()) {
+            for (JsonNode update : json) {
+                updates.add(update(update));
+            }
+        }
+        else if (json.has("sequence")) {
+            updates.add(update(json));
+        }
+        return updates;
+    }
+
+    private LevelUpdate update(JsonNode json) {
+        return new LevelUpdate(
+                new CurrencyPair(json.get("pair").asText()),
+                json.get("sequence").asLong(),
+                "ask".equalsIgnoreCase(json.get("side").asText()) ? Order.OrderType.ASK : Order.OrderType.BID,
+                new BigDecimal(json.get("price").asText()),
+                new BigDecimal(json.get("amount").asText()));
+    }
+
+    private String control(String type, CurrencyPair currencyPair) {
+        ObjectNode json = mapper.createObjectNode();
+        json.put("type", type);
+        json.put("pair", currencyPair.toString());
+        return json.toString();
+    }
+
+    private void send(String message) throws IOException {
+        Session current = session;
+        if (current == null || !current.isOpen()) {
+            throw new IOException(exchange + " stream not connected");
+        }
+        synchronized (current) {
+            current.getBasicRemote().sendText(message);
+        }
+    }
+}
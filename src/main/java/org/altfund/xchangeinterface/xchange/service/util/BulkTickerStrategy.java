@@ -0,0 +1,19 @@
+package org.altfund.xchangeinterface.xchange.service.util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.marketdata.Ticker;
+import org.knowm.xchange.service.marketdata.MarketDataService;
+
+/*
+ * Fetches the tickers of many pairs in one upstream call through the exchange's raw market
+ * data service. Pairs the exchange did not return are simply missing from the result.
+ */
+public interface BulkTickerStrategy {
+
+    Map<CurrencyPair, Ticker> getTickers(MarketDataService rawMarketDataService, List<CurrencyPair> currencyPairs) throws IOException;
+
+}
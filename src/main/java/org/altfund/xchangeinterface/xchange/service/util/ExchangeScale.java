@@ -3,22 +3,29 @@ package org.altfund.xchangeinterface.xchange.service.util;
 import java.util.Map;
 import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
+import org.altfund.xchangeinterface.xchange.model.CompactOrderBook;
 import org.altfund.xchangeinterface.xchange.model.ExchangeCredentials;
+import org.altfund.xchangeinterface.xchange.model.ExchangeMetaDataSnapshot;
 import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.marketdata.OrderBook;
 import org.knowm.xchange.dto.meta.ExchangeMetaData;
 import org.knowm.xchange.dto.meta.CurrencyPairMetaData;
 import org.knowm.xchange.dto.meta.CurrencyMetaData;
 import java.math.BigDecimal;
 
 @Slf4j
+/*
+ * Scales are read from the published metadata snapshot, which is immutable and swapped as a
+ * whole by the refresher, so no locking is needed here.
+ */
 public class ExchangeScale {
 
-    public BigDecimal getMinimumAmount(CurrencyPair cp, org.knowm.xchange.Exchange exchange) {
+    public BigDecimal getMinimumAmount(CurrencyPair cp, ExchangeMetaDataSnapshot snapshot) {
         //Optional<org.knowm.xchange.Exchange> exchange =
         //    Optional.ofNullable(exchangeCredsMap.get(exchangeCredentials));
 
-        Optional<ExchangeMetaData> exchangeMetaData =
-            Optional.ofNullable(exchange.getExchangeMetaData());
+        Optional<ExchangeMetaDataSnapshot> exchangeMetaData =
+            Optional.ofNullable(snapshot);
 
         Optional<CurrencyPairMetaData> exCurPairMetaData =
             Optional.ofNullable(exchangeMetaData.get().getCurrencyPairs().get(cp));
@@ -34,7 +41,7 @@ public class ExchangeScale {
     /* quote we want to use the price scale determined by the market.
      *
      */
-    public int getQuoteScale(CurrencyPair cp, org.knowm.xchange.Exchange exchange) {
+    public int getQuoteScale(CurrencyPair cp, ExchangeMetaDataSnapshot snapshot) {
 
         //TODO check BCH/USD metadata, if it is correct stop this nonsense.
         CurrencyPair currencyPair = new CurrencyPair("BCH","USD");
@@ -44,8 +51,8 @@ public class ExchangeScale {
             return 2;
         }
 
-        Optional<ExchangeMetaData> exchangeMetaData =
-            Optional.ofNullable(exchange.getExchangeMetaData());
+        Optional<ExchangeMetaDataSnapshot> exchangeMetaData =
+            Optional.ofNullable(snapshot);
 
         Optional<Integer> exQuoteCurScale = null;
         Optional<CurrencyMetaData> exQuoteCurMd = null;
@@ -94,9 +101,9 @@ public class ExchangeScale {
     /*
      *
      */
-    public int getBaseScale(CurrencyPair cp, org.knowm.xchange.Exchange exchange) {
-        Optional<ExchangeMetaData> exchangeMetaData =
-            Optional.ofNullable(exchange.getExchangeMetaData());
+    public int getBaseScale(CurrencyPair cp, ExchangeMetaDataSnapshot snapshot) {
+        Optional<ExchangeMetaDataSnapshot> exchangeMetaData =
+            Optional.ofNullable(snapshot);
 
         Optional<Integer> exBaseCurScale = null;
         Optional<CurrencyMetaData> exBaseCurMd = null;
@@ -129,4 +136,11 @@ public class ExchangeScale {
         log.debug("setting base scale: {}", 2);
         return 2;
     }
+
+    /*
+     * orderBook as scaled longs at the quote and base scales, snapshot may be null.
+     */
+    public CompactOrderBook compact(OrderBook orderBook, CurrencyPair cp, ExchangeMetaDataSnapshot snapshot) {
+        return CompactOrderBook.from(orderBook, cp, getQuoteScale(cp, snapshot), getBaseScale(cp, snapshot));
+    }
 }
@@ -8,6 +8,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.PrintWriter;
+import java.util.concurrent.TimeoutException;
 
 import org.altfund.xchangeinterface.xchange.model.OrderStatus;
 import org.altfund.xchangeinterface.xchange.service.exceptions.XChangeServiceException;
@@ -25,15 +26,36 @@ import static org.altfund.xchangeinterface.xchange.model.OrderStatusTypes.NOT_AV
 import static org.altfund.xchangeinterface.xchange.model.OrderStatusTypes.NOT_YET_IMPLEMENTED_FOR_EXCHANGE;
 import static org.altfund.xchangeinterface.xchange.model.OrderStatusTypes.NETWORK_ERROR;
 import static org.altfund.xchangeinterface.xchange.model.OrderStatusTypes.UNKNOWN_ERROR;
+import static org.altfund.xchangeinterface.xchange.model.OrderStatusTypes.RATE_LIMITED;
+import static org.altfund.xchangeinterface.xchange.model.OrderStatusTypes.CIRCUIT_OPEN;
+import org.altfund.xchangeinterface.xchange.service.exceptions.CircuitOpenException;
+import org.altfund.xchangeinterface.xchange.service.exceptions.RateLimitExceededException;
 
 public class ExtractExceptions {
 
+    // errors a freshly built and remote initialized exchange should not repeat: rejected keys,
+    // nonces and signatures, and pairs or currencies missing from stale metadata.
+    private static final String[] STALE_SESSION_PHRASES = {
+        "api key", "apikey", "api-key", "invalid key", "unauthorized", "forbidden", "permission",
+        "authenticat", "nonce", "signature", "invalid sign",
+        "unknown asset pair", "unknown currency", "invalid currency pair", "unknown symbol", "invalid symbol"
+    };
+
     public static ObjectNode toJson(Exception e, JsonHelper jh) {
         ObjectNode errorMap = jh.getObjectNode();
         if (e instanceof IOException) {
             // Orders failed due to a network error can be retried.
             errorMap.put("ERROR", "Indication that a networking error occurred while fetching JSON data while fetching requested data on exchange " );
             return errorMap;
+        } else if (e instanceof TimeoutException) {
+            errorMap.put("ERROR", "Timed out while fetching requested data on exchange " );
+            return errorMap;
+        } else if (e instanceof RateLimitExceededException) {
+            errorMap.put("ERROR", "Rate limit exceeded, request was not sent to exchange " );
+            return errorMap;
+        } else if (e instanceof CircuitOpenException) {
+            errorMap.put("ERROR", "Exchange is failing, circuit open, request was not sent to exchange " );
+            return errorMap;
         } else if (e instanceof ExchangeException) {
             errorMap.put("ERROR", "Indication that the exchange reported some kind of error with the request or response while fetching requested data on exchange " );
             return errorMap;
@@ -89,6 +111,11 @@ public class ExtractExceptions {
             e.printStackTrace();
             return new OrderStatus(NETWORK_ERROR, errorPhrase);
             //return OrderStatus.NETWORK_ERROR;
+        } else if (e instanceof RateLimitExceededException) {
+            // never reached the exchange, safe to retry.
+            return new OrderStatus(RATE_LIMITED, errorPhrase);
+        } else if (e instanceof CircuitOpenException) {
+            return new OrderStatus(CIRCUIT_OPEN, errorPhrase);
         } else if (e instanceof ExchangeException) {
             //e.printStackTrace();
             //return OrderStatus.GENERAL_EXCHANGE_ERROR;
@@ -113,6 +140,46 @@ public class ExtractExceptions {
         }
     }
 
+    /*
+     * True if e says the exchange is unreachable or failing (network errors, timeouts, http
+     * error statuses) rather than that it rejected this particular request.
+     */
+    public static boolean isOutage(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * True if e, or one of its causes, says the exchange instance itself is stale (auth, nonce,
+     * signature or metadata errors), so a pooled credentialed exchange is worth rebuilding.
+     * Plain rejections of a request (funds, sizes, prices) and outages are not.
+     */
+    public static boolean isStaleSession(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (isStaleSession(t.getMessage())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean isStaleSession(String phrase) {
+        if (phrase == null) {
+            return false;
+        }
+        String lower = phrase.toLowerCase();
+        for (String stale : STALE_SESSION_PHRASES) {
+            if (lower.contains(stale)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static String getErrorPhrase(Exception e) {
         //return e.getClass().getCanonicalName() + " :: " + getCurrentStackTraceString(e);
         return e.getClass().getCanonicalName() + " :: " + e.getMessage().toString();
@@ -5,35 +5,35 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.List;
 import org.knowm.xchange.currency.CurrencyPair;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.knowm.xchange.service.marketdata.MarketDataService;
-import org.knowm.xchange.dto.marketdata.Ticker;
 import org.altfund.xchangeinterface.xchange.service.exceptions.XChangeServiceException;
 import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.util.Timestamped;
 
 @Slf4j
 public class ExtractExchangeTickers {
 
     public static ObjectNode toJson(
             List<CurrencyPair> currencyPairs,
-            MarketDataService marketDataService,
+            List<Object> tickers,
             String exchange,
             JsonHelper jh) throws XChangeServiceException {
 
         ObjectNode errorMap = jh.getObjectNode();
         ObjectNode json = jh.getObjectNode();
         ObjectNode innerJson;
-        Ticker ticker = null;
 
         try {
-            for (CurrencyPair cp : currencyPairs) {
-                innerJson = jh.getObjectNode();
+            for (int i = 0; i < currencyPairs.size(); i++) {
+                CurrencyPair cp = currencyPairs.get(i);
+                Object ticker = tickers.get(i);
 
-                try {
-                    ticker = marketDataService.getTicker(cp);
-                    innerJson = jh.getObjectMapper().convertValue(ticker, ObjectNode.class);
+                if (ticker instanceof Timestamped) {
+                    Timestamped<?> timestamped = (Timestamped<?>) ticker;
+                    innerJson = jh.getObjectMapper().convertValue(timestamped.getValue(), ObjectNode.class);
+                    innerJson.put("fetched_at", timestamped.getFetchedAt());
                     json.put(cp.toString(), innerJson);
-                } catch (Exception e) {
-                    json.put(cp.toString(), ExtractExceptions.toJson(e, jh));
+                } else {
+                    json.put(cp.toString(), ExtractExceptions.toJson((Exception) ticker, jh));
                 }
             }
 
@@ -3,7 +3,9 @@ package org.altfund.xchangeinterface.xchange.service.util;
 import org.altfund.xchangeinterface.xchange.service.util.ExtractExceptions;
 import org.altfund.xchangeinterface.xchange.service.util.OrderBookSquasher;
 import lombok.extern.slf4j.Slf4j;
+import java.math.BigDecimal;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import org.knowm.xchange.currency.CurrencyPair;
 import org.knowm.xchange.dto.marketdata.OrderBook;
 import org.altfund.xchangeinterface.xchange.model.MarketByExchanges;
@@ -12,12 +14,13 @@ import org.knowm.xchange.service.marketdata.MarketDataService;
 import org.altfund.xchangeinterface.xchange.service.exceptions.XChangeServiceException;
 import org.altfund.xchangeinterface.util.JsonHelper;
 import org.altfund.xchangeinterface.util.KWayMerge;
+import org.altfund.xchangeinterface.util.Timestamped;
 
 @Slf4j
 public class ExtractOrderBooks {
 
     public static ObjectNode toJson(
-            MarketDataService marketDataService,
+            Callable<Timestamped<OrderBook>> orderBook,
             Map<String, String> params,
             JsonHelper jh) throws XChangeServiceException {
 
@@ -35,7 +38,18 @@ public class ExtractOrderBooks {
             log.debug("currency pair submitted to order book {}.", cp.toString());
 
             try {
-                innerJson = jh.getObjectMapper().convertValue(getOrderBook(marketDataService, cp, params.get("exchange")), ObjectNode.class);
+                Timestamped<OrderBook> book = orderBook.call();
+                OrderBook bucketed = book.getValue();
+                BigDecimal bucketSize = OrderBookFilter.bucketSize(params, OrderBookFilter.mid(bucketed.getAsks(), bucketed.getBids()));
+                if (bucketSize != null) {
+                    bucketed = OrderBookSquasher.byBucket(bucketed, bucketSize);
+                }
+                OrderBook filtered = OrderBookFilter.apply(
+                        bucketed,
+                        OrderBookFilter.depth(params),
+                        OrderBookFilter.priceBand(params));
+                innerJson = jh.getObjectMapper().convertValue(filtered, ObjectNode.class);
+                innerJson.put("fetched_at", book.getFetchedAt());
                 json.put(cp.toString(), innerJson);
             } catch (Exception e) {
                 json.put(cp.toString(), ExtractExceptions.toJson(e, jh));
@@ -50,17 +64,23 @@ public class ExtractOrderBooks {
         return json;
     }
 
+    /*
+     * levels as returned by OrderBookDepthHints.levels, null for the full book. perOrder
+     * books (see ExchangeCatalog.isPerOrderBook) are squashed to one order per price.
+     */
     public static OrderBook raw (
                         MarketDataService marketDataService,
                         CurrencyPair cp,
-                        String exchange)  throws Exception {
+                        String exchange,
+                        Integer levels,
+                        boolean perOrder)  throws Exception {
         OrderBook orderBook = null;
 
         try {
             log.debug("{} currency pair submitted to order book {}.", exchange, cp.toString());
 
             try {
-                orderBook = getOrderBook(marketDataService, cp, exchange);
+                orderBook = getOrderBook(marketDataService, cp, exchange, levels, perOrder);
                 log.debug("Got order book for exchange {} market {}.", exchange, cp.toString());
             } catch (Exception e) {
                 log.debug("Failed to get order book for exchange {} market {}.", exchange, cp.toString());
@@ -74,12 +94,12 @@ public class ExtractOrderBooks {
         return orderBook;
     }
 
-    private static OrderBook getOrderBook(MarketDataService marketDataService, CurrencyPair cp, String exchange) throws Exception{
-        //TODO add exchange specific logic to get order book if it is unaggregated.
-        if (exchange.toLowerCase().equals("gdax")) {
-            log.debug("\n\n\n\n\n\nGDAX ORDER BOOK AGGREGATION");
-            return OrderBookSquasher.byPrice(marketDataService.getOrderBook(cp));
+    private static OrderBook getOrderBook(MarketDataService marketDataService, CurrencyPair cp, String exchange, Integer levels, boolean perOrder) throws Exception{
+        Object[] args = OrderBookDepthHints.args(exchange, levels);
+        if (perOrder) {
+            // a no-op on books that turn out to be aggregated already (gdax level 1 and 2).
+            return OrderBookSquasher.byPrice(marketDataService.getOrderBook(cp, args));
         }
-        return marketDataService.getOrderBook(cp);
+        return marketDataService.getOrderBook(cp, args);
     }
 }
@@ -0,0 +1,34 @@
+package org.altfund.xchangeinterface.xchange.service.util;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.marketdata.Ticker;
+import org.knowm.xchange.kraken.KrakenAdapters;
+import org.knowm.xchange.kraken.dto.marketdata.KrakenTicker;
+import org.knowm.xchange.kraken.service.KrakenMarketDataServiceRaw;
+import org.knowm.xchange.service.marketdata.MarketDataService;
+
+/*
+ * Ticker takes a list of pairs, the answer is keyed by kraken's asset pair names.
+ */
+public class KrakenBulkTickerStrategy implements BulkTickerStrategy {
+
+    @Override
+    public Map<CurrencyPair, Ticker> getTickers(MarketDataService rawMarketDataService, List<CurrencyPair> currencyPairs) throws IOException {
+        Map<String, KrakenTicker> krakenTickers = ((KrakenMarketDataServiceRaw) rawMarketDataService)
+            .getKrakenTickers(currencyPairs.toArray(new CurrencyPair[0]));
+        Map<CurrencyPair, Ticker> tickers = new HashMap<>();
+        if (krakenTickers == null) {
+            return tickers;
+        }
+        for (Map.Entry<String, KrakenTicker> entry : krakenTickers.entrySet()) {
+            CurrencyPair cp = KrakenAdapters.adaptCurrencyPair(entry.getKey());
+            tickers.put(cp, KrakenAdapters.adaptTicker(entry.getValue(), cp));
+        }
+        return tickers;
+    }
+}
@@ -17,6 +17,7 @@ import static org.knowm.xchange.dto.Order.OrderType.BID;
 
 import org.altfund.xchangeinterface.xchange.service.util.ExchangeScale;
 import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.xchange.model.ExchangeMetaDataSnapshot;
 import org.altfund.xchangeinterface.xchange.model.Order;
 import org.altfund.xchangeinterface.xchange.model.OrderSpec;
 import org.altfund.xchangeinterface.xchange.model.OrderStatus;
@@ -47,7 +48,7 @@ public class LimitOrderPlacer {
             Order order,
             TradeService tradeService,
             CurrencyPair currencyPair,
-            org.knowm.xchange.Exchange exchange,
+            ExchangeMetaDataSnapshot snapshot,
             JsonHelper jh) throws XChangeServiceException {
 
         LimitOrder lo = null;
@@ -63,8 +64,8 @@ public class LimitOrderPlacer {
 
         log.debug("currency pair is {}", currencyPair);
 
-        int baseScale = exchangeScale.getBaseScale(currencyPair, exchange);
-        int quoteScale = exchangeScale.getQuoteScale(currencyPair, exchange);
+        int baseScale = exchangeScale.getBaseScale(currencyPair, snapshot);
+        int quoteScale = exchangeScale.getQuoteScale(currencyPair, snapshot);
 
         BigDecimal base = order.getOrderSpec().getVolume();
         BigDecimal quote = order.getOrderSpec().getPrice();
@@ -0,0 +1,79 @@
+package org.altfund.xchangeinterface.xchange.service.util;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+
+import org.knowm.xchange.currency.Currency;
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.meta.CurrencyMetaData;
+import org.knowm.xchange.dto.meta.CurrencyPairMetaData;
+import org.knowm.xchange.dto.meta.ExchangeMetaData;
+
+import org.altfund.xchangeinterface.xchange.model.ExchangeMetaDataSnapshot;
+
+@Slf4j
+public class MetaDataDiff {
+
+    /*
+     * True if fresh lists, delists or changes a currency pair or currency compared to current.
+     */
+    public static boolean isChanged(ExchangeMetaDataSnapshot current, ExchangeMetaData fresh, String exchange) {
+        if (current == null) {
+            return true;
+        }
+        Map<CurrencyPair, CurrencyPairMetaData> freshPairs = fresh.getCurrencyPairs();
+        Map<Currency, CurrencyMetaData> freshCurrencies = fresh.getCurrencies();
+        if (freshPairs == null || freshCurrencies == null) {
+            return false;
+        }
+
+        int added = 0;
+        int changed = 0;
+        for (Map.Entry<CurrencyPair, CurrencyPairMetaData> entry : freshPairs.entrySet()) {
+            CurrencyPairMetaData old = current.getCurrencyPairs().get(entry.getKey());
+            if (old == null) {
+                added++;
+            }
+            else if (!isSame(old, entry.getValue())) {
+                changed++;
+            }
+        }
+        int removed = 0;
+        for (CurrencyPair cp : current.getCurrencyPairs().keySet()) {
+            if (!freshPairs.containsKey(cp)) {
+                removed++;
+            }
+        }
+        for (Map.Entry<Currency, CurrencyMetaData> entry : freshCurrencies.entrySet()) {
+            CurrencyMetaData old = current.getCurrencies().get(entry.getKey());
+            if (old == null || !Objects.equals(old.getScale(), entry.getValue().getScale())) {
+                changed++;
+            }
+        }
+        if (freshCurrencies.size() != current.getCurrencies().size()) {
+            changed++;
+        }
+
+        if (added + removed + changed > 0) {
+            log.info("Metadata of {} changed: {} pairs added, {} removed, {} entries changed.", exchange, added, removed, changed);
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isSame(CurrencyPairMetaData a, CurrencyPairMetaData b) {
+        return isSame(a.getMinimumAmount(), b.getMinimumAmount())
+            && isSame(a.getMaximumAmount(), b.getMaximumAmount())
+            && isSame(a.getTradingFee(), b.getTradingFee())
+            && Objects.equals(a.getPriceScale(), b.getPriceScale());
+    }
+
+    private static boolean isSame(BigDecimal a, BigDecimal b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.compareTo(b) == 0;
+    }
+}
@@ -0,0 +1,73 @@
+package org.altfund.xchangeinterface.xchange.service.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Maps a requested depth to the order book arguments of the exchange's MarketDataService, so
+ * the exchange returns only the levels we keep. levels() rounds a depth to what the exchange
+ * can actually be asked for (null for the full book), args() builds the knowm arguments for it.
+ * Exchanges not listed here always return their default book.
+ */
+public class OrderBookDepthHints {
+
+    private static final int[] BINANCE_LIMITS = {5, 10, 20, 50, 100, 500, 1000};
+
+    private static class Hint {
+        private final IntUnaryOperator levels;
+        private final Function<Integer, Object[]> args;
+
+        Hint(IntUnaryOperator levels, Function<Integer, Object[]> args) {
+            this.levels = levels;
+            this.args = args;
+        }
+    }
+
+    private static final Map<String, Hint> HINTS = new HashMap<>();
+
+    static {
+        // PoloniexMarketDataService: Integer depth.
+        HINTS.put("poloniex", new Hint(depth -> depth, levels -> new Object[] {levels}));
+        // KrakenMarketDataService: Long count.
+        HINTS.put("kraken", new Hint(depth -> depth, levels -> new Object[] {(long) levels}));
+        // BinanceMarketDataService: Integer limit, one of BINANCE_LIMITS.
+        HINTS.put("binance", new Hint(OrderBookDepthHints::binanceLimit, levels -> new Object[] {levels}));
+        // BitfinexMarketDataService: Integer limit_bids, Integer limit_asks.
+        HINTS.put("bitfinex", new Hint(depth -> depth, levels -> new Object[] {levels, levels}));
+        // GDAXMarketDataService: Integer level, 1 best bid and ask, 2 top 50 aggregated, 3 full.
+        HINTS.put("gdax", new Hint(depth -> depth <= 1 ? 1 : depth <= 50 ? 50 : -1, levels -> new Object[] {levels == 1 ? 1 : 2}));
+    }
+
+    /*
+     * Levels per side to request from exchange for depth, null for the full book.
+     */
+    public static Integer levels(String exchange, Integer depth) {
+        Hint hint = exchange == null ? null : HINTS.get(exchange.toLowerCase());
+        if (hint == null || depth == null || depth <= 0) {
+            return null;
+        }
+        int levels = hint.levels.applyAsInt(depth);
+        return levels < 0 ? null : levels;
+    }
+
+    /*
+     * MarketDataService.getOrderBook arguments for levels as returned by levels().
+     */
+    public static Object[] args(String exchange, Integer levels) {
+        if (levels == null) {
+            return new Object[0];
+        }
+        return HINTS.get(exchange.toLowerCase()).args.apply(levels);
+    }
+
+    private static int binanceLimit(int depth) {
+        for (int limit : BINANCE_LIMITS) {
+            if (depth <= limit) {
+                return limit;
+            }
+        }
+        return BINANCE_LIMITS[BINANCE_LIMITS.length - 1];
+    }
+}
@@ -0,0 +1,209 @@
+package org.altfund.xchangeinterface.xchange.service.util;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.trade.LimitOrder;
+
+import org.altfund.xchangeinterface.xchange.model.CompactOrderBook;
+import org.altfund.xchangeinterface.xchange.service.exceptions.XChangeServiceException;
+
+/**
+ * Cuts order books down to what the caller asked for before they are serialized: the best
+ * depth levels per side and/or the levels within priceBand percent of the mid price. Both
+ * limits are optional (null), sides are expected best price first as XChange returns them.
+ * The cached books are shared, so results are always copies.
+ */
+public class OrderBookFilter {
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+    private static final BigDecimal BPS = BigDecimal.valueOf(10000);
+    // bucket sizes derived from basis points are kept to a few significant digits.
+    private static final MathContext BUCKET_PRECISION = new MathContext(4);
+
+    public static OrderBook apply(OrderBook orderBook, Integer depth, BigDecimal priceBand) {
+        if (depth == null && priceBand == null) {
+            return orderBook;
+        }
+        BigDecimal mid = mid(orderBook.getAsks(), orderBook.getBids());
+        return new OrderBook(
+                orderBook.getTimeStamp(),
+                asks(orderBook.getAsks(), depth, ceiling(mid, priceBand)),
+                bids(orderBook.getBids(), depth, floor(mid, priceBand)));
+    }
+
+    /*
+     * Mid of the best ask and best bid, null if either side is empty.
+     */
+    public static BigDecimal mid(List<LimitOrder> asks, List<LimitOrder> bids) {
+        if (asks.isEmpty() || bids.isEmpty()) {
+            return null;
+        }
+        return asks.get(0).getLimitPrice().add(bids.get(0).getLimitPrice()).divide(TWO, MathContext.DECIMAL64);
+    }
+
+    /*
+     * Mid of the best ask and best bid across books, null if all asks or all bids are empty.
+     */
+    public static BigDecimal mid(List<OrderBook> books) {
+        BigDecimal bestAsk = null;
+        BigDecimal bestBid = null;
+        for (OrderBook book : books) {
+            if (!book.getAsks().isEmpty() && (bestAsk == null || book.getAsks().get(0).getLimitPrice().compareTo(bestAsk) < 0)) {
+                bestAsk = book.getAsks().get(0).getLimitPrice();
+            }
+            if (!book.getBids().isEmpty() && (bestBid == null || book.getBids().get(0).getLimitPrice().compareTo(bestBid) > 0)) {
+                bestBid = book.getBids().get(0).getLimitPrice();
+            }
+        }
+        if (bestAsk == null || bestBid == null) {
+            return null;
+        }
+        return bestAsk.add(bestBid).divide(TWO, MathContext.DECIMAL64);
+    }
+
+    public static BigDecimal ceiling(BigDecimal mid, BigDecimal priceBand) {
+        if (mid == null || priceBand == null) {
+            return null;
+        }
+        return mid.multiply(BigDecimal.ONE.add(priceBand.divide(HUNDRED, MathContext.DECIMAL64)));
+    }
+
+    public static BigDecimal floor(BigDecimal mid, BigDecimal priceBand) {
+        if (mid == null || priceBand == null) {
+            return null;
+        }
+        return mid.multiply(BigDecimal.ONE.subtract(priceBand.divide(HUNDRED, MathContext.DECIMAL64)));
+    }
+
+    /*
+     * Best depth asks priced at or below ceiling, either limit may be null.
+     */
+    public static List<LimitOrder> asks(List<LimitOrder> asks, Integer depth, BigDecimal ceiling) {
+        int end = limit(asks, depth);
+        if (ceiling != null) {
+            for (int i = 0; i < end; i++) {
+                if (asks.get(i).getLimitPrice().compareTo(ceiling) > 0) {
+                    end = i;
+                    break;
+                }
+            }
+        }
+        return new ArrayList<>(asks.subList(0, end));
+    }
+
+    /*
+     * Best depth bids priced at or above floor, either limit may be null.
+     */
+    public static List<LimitOrder> bids(List<LimitOrder> bids, Integer depth, BigDecimal floor) {
+        int end = limit(bids, depth);
+        if (floor != null) {
+            for (int i = 0; i < end; i++) {
+                if (bids.get(i).getLimitPrice().compareTo(floor) < 0) {
+                    end = i;
+                    break;
+                }
+            }
+        }
+        return new ArrayList<>(bids.subList(0, end));
+    }
+
+    /*
+     * asks and bids on a compact book, ceiling and floor as returned by ceiling() and floor().
+     */
+    public static CompactOrderBook apply(CompactOrderBook orderBook, Integer depth, BigDecimal ceiling, BigDecimal floor) {
+        CompactOrderBook.Side asks = orderBook.getAsks();
+        CompactOrderBook.Side bids = orderBook.getBids();
+        int askEnd = limit(asks.size(), depth);
+        int bidEnd = limit(bids.size(), depth);
+        if (ceiling != null) {
+            long ceilingTicks = orderBook.scalePrice(ceiling, RoundingMode.FLOOR);
+            for (int i = 0; i < askEnd; i++) {
+                if (asks.getPrice(i) > ceilingTicks) {
+                    askEnd = i;
+                    break;
+                }
+            }
+        }
+        if (floor != null) {
+            long floorTicks = orderBook.scalePrice(floor, RoundingMode.CEILING);
+            for (int i = 0; i < bidEnd; i++) {
+                if (bids.getPrice(i) < floorTicks) {
+                    bidEnd = i;
+                    break;
+                }
+            }
+        }
+        return orderBook.withSides(asks.head(askEnd), bids.head(bidEnd));
+    }
+
+    /*
+     * depth and price_band from decrypted request params, which may hold json numbers.
+     */
+    public static Integer depth(Map<String, ?> params) {
+        Object depth = params.get("depth");
+        return depth == null ? null : Integer.valueOf(depth.toString());
+    }
+
+    /*
+     * max_age in milliseconds, null if absent. A value that is not a whole, non negative
+     * number is reported back to the caller instead of failing the request.
+     */
+    public static Long maxAge(Map<String, ?> params) throws XChangeServiceException {
+        Object maxAge = params.get("max_age");
+        if (maxAge == null) {
+            return null;
+        }
+        try {
+            Long millis = Long.valueOf(maxAge.toString());
+            if (millis >= 0) {
+                return millis;
+            }
+        }
+        catch (NumberFormatException ex) {
+            // reported below.
+        }
+        throw new XChangeServiceException("max_age must be a whole number of milliseconds, was " + maxAge);
+    }
+
+    public static BigDecimal priceBand(Map<String, ?> params) {
+        Object priceBand = params.get("price_band");
+        return priceBand == null ? null : new BigDecimal(priceBand.toString());
+    }
+
+    /*
+     * Bucket size for price grouping from bucket (absolute, quote currency) or bucket_bps
+     * (basis points of mid), null for none or if bucket_bps is given without a mid price.
+     */
+    public static BigDecimal bucketSize(BigDecimal bucket, BigDecimal bucketBps, BigDecimal mid) {
+        if (bucket != null) {
+            return bucket.signum() > 0 ? bucket : null;
+        }
+        if (bucketBps == null || bucketBps.signum() <= 0 || mid == null) {
+            return null;
+        }
+        return mid.multiply(bucketBps).divide(BPS, BUCKET_PRECISION);
+    }
+
+    public static BigDecimal bucketSize(Map<String, ?> params, BigDecimal mid) {
+        return bucketSize(decimal(params.get("bucket")), decimal(params.get("bucket_bps")), mid);
+    }
+
+    private static BigDecimal decimal(Object value) {
+        return value == null ? null : new BigDecimal(value.toString());
+    }
+
+    private static int limit(List<?> orders, Integer depth) {
+        return limit(orders.size(), depth);
+    }
+
+    private static int limit(int size, Integer depth) {
+        return depth == null ? size : Math.min(Math.max(depth, 0), size);
+    }
+}
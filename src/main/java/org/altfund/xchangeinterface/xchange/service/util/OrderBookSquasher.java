@@ -4,55 +4,125 @@ import org.knowm.xchange.dto.trade.LimitOrder;
 import org.knowm.xchange.dto.marketdata.OrderBook;
 import lombok.extern.slf4j.Slf4j;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.Date;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 
+import org.altfund.xchangeinterface.xchange.model.CompactOrderBook;
+
+/*
+ * Turns per order (L3) books into per price level books, or groups levels into coarser price
+ * buckets. Asks are rounded up and bids down to their bucket, so a bucket never looks better
+ * than the orders in it.
+ */
 @Slf4j
 public class OrderBookSquasher {
 
     public static OrderBook byPrice(OrderBook orderBook) {
+        return byBucket(orderBook, null);
+    }
+
+    /*
+     * Levels grouped into buckets of bucketSize (quote currency), by exact price if null.
+     */
+    public static OrderBook byBucket(OrderBook orderBook, BigDecimal bucketSize) {
         List<LimitOrder> asks = orderBook.getAsks();
         List<LimitOrder> bids = orderBook.getBids();
         Date timestamp = orderBook.getTimeStamp();
 
         return new OrderBook(timestamp,
-                            aggregateLimitOrders(asks),
-                            aggregateLimitOrders(bids));
+                            bucketAsks(asks, bucketSize),
+                            bucketBids(bids, bucketSize));
     }
 
-    private static List<LimitOrder> aggregateLimitOrders(List<LimitOrder> orders) {
-        List<LimitOrder> aggregatedOrders = new ArrayList<LimitOrder>();
-        LimitOrder currLo = null;
-        boolean firstAccum = true;
-        aggregatedOrders.add(orders.get(0));
+    public static List<LimitOrder> bucketAsks(List<LimitOrder> asks, BigDecimal bucketSize) {
+        return aggregateLimitOrders(asks, bucketSize, RoundingMode.CEILING);
+    }
 
-        int size = 0;
-        for (int i = 1; i < orders.size(); i++) {
-            aggregatedOrders.add(orders.get(i));
-            size = aggregatedOrders.size();
+    public static List<LimitOrder> bucketBids(List<LimitOrder> bids, BigDecimal bucketSize) {
+        return aggregateLimitOrders(bids, bucketSize, RoundingMode.FLOOR);
+    }
 
-            if (aggregatedOrders.get(size - 2).getLimitPrice().compareTo(aggregatedOrders.get(size - 1).getLimitPrice()) == 0){
-                aggregatedOrders = combineConsecutivePriceMatch(aggregatedOrders, size - 1);
+    /*
+     * Single pass over orders sorted by price, every run of orders in the same bucket becomes
+     * one level with their summed amount. A level of a single order already at its bucket
+     * price is the order itself.
+     */
+    private static List<LimitOrder> aggregateLimitOrders(List<LimitOrder> orders, BigDecimal bucketSize, RoundingMode rounding) {
+        List<LimitOrder> aggregatedOrders = new ArrayList<LimitOrder>(orders.size());
+        int size = orders.size();
+        int i = 0;
+        BigDecimal level = size == 0 ? null : bucket(orders.get(0).getLimitPrice(), bucketSize, rounding);
+
+        while (i < size) {
+            LimitOrder first = orders.get(i);
+            BigDecimal amount = first.getOriginalAmount();
+            BigDecimal next = null;
+            int j = i + 1;
+            while (j < size) {
+                next = bucket(orders.get(j).getLimitPrice(), bucketSize, rounding);
+                if (next.compareTo(level) != 0) {
+                    break;
+                }
+                amount = amount.add(orders.get(j).getOriginalAmount());
+                j++;
+            }
+
+            if (j == i + 1 && first.getLimitPrice().compareTo(level) == 0) {
+                aggregatedOrders.add(first);
+            }
+            else {
+                aggregatedOrders.add(
+                            new LimitOrder.Builder(first.getType(), first.getCurrencyPair())
+                            .originalAmount(amount)
+                            .limitPrice(level)
+                            .build()
+                        );
             }
+            i = j;
+            level = next;
         }
 
         return aggregatedOrders;
     }
 
-    public static List<LimitOrder> combineConsecutivePriceMatch(List<LimitOrder> orders, int i) {
-        int firstOrder = i - 1;
-        int secondOrder = i;
-        LimitOrder order1 = orders.get(firstOrder);
-        LimitOrder order2 = orders.get(secondOrder);
-        orders.remove(secondOrder);
-        orders.remove(firstOrder);
-        orders.add(
-                    new LimitOrder.Builder(order1.getType(), order1.getCurrencyPair())
-                    .originalAmount(order1.getOriginalAmount().add(order2.getOriginalAmount()))
-                    .limitPrice(order1.getLimitPrice())
-                    .build()
-                );
-        return orders;
+    /*
+     * byBucket on a compact book, buckets are whole price ticks of the book's price scale.
+     */
+    public static CompactOrderBook byBucket(CompactOrderBook orderBook, BigDecimal bucketSize) {
+        long ticks = bucketSize == null ? 1 : Math.max(1, orderBook.scalePrice(bucketSize, RoundingMode.CEILING));
+        return orderBook.withSides(
+                aggregateLevels(orderBook.getAsks(), ticks, true),
+                aggregateLevels(orderBook.getBids(), ticks, false));
+    }
+
+    private static CompactOrderBook.Side aggregateLevels(CompactOrderBook.Side side, long ticks, boolean roundUp) {
+        int size = side.size();
+        long[] prices = new long[size];
+        long[] amounts = new long[size];
+        int levels = 0;
+
+        for (int i = 0; i < size; i++) {
+            long price = side.getPrice(i);
+            long level = roundUp ? -Math.floorDiv(-price, ticks) * ticks : Math.floorDiv(price, ticks) * ticks;
+            if (levels > 0 && prices[levels - 1] == level) {
+                amounts[levels - 1] += side.getAmount(i);
+            }
+            else {
+                prices[levels] = level;
+                amounts[levels] = side.getAmount(i);
+                levels++;
+            }
+        }
+        return new CompactOrderBook.ArraySide(side.getType(), Arrays.copyOf(prices, levels), Arrays.copyOf(amounts, levels));
+    }
+
+    private static BigDecimal bucket(BigDecimal price, BigDecimal bucketSize, RoundingMode rounding) {
+        if (bucketSize == null) {
+            return price;
+        }
+        return price.divide(bucketSize, 0, rounding).multiply(bucketSize);
     }
 }
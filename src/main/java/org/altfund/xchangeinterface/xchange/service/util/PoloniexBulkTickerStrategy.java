@@ -0,0 +1,36 @@
+package org.altfund.xchangeinterface.xchange.service.util;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.marketdata.Ticker;
+import org.knowm.xchange.poloniex.PoloniexAdapters;
+import org.knowm.xchange.poloniex.dto.marketdata.PoloniexMarketData;
+import org.knowm.xchange.poloniex.dto.marketdata.PoloniexTicker;
+import org.knowm.xchange.poloniex.service.PoloniexMarketDataServiceRaw;
+import org.knowm.xchange.service.marketdata.MarketDataService;
+
+/*
+ * returnTicker answers every market at once, keyed COUNTER_BASE.
+ */
+public class PoloniexBulkTickerStrategy implements BulkTickerStrategy {
+
+    @Override
+    public Map<CurrencyPair, Ticker> getTickers(MarketDataService rawMarketDataService, List<CurrencyPair> currencyPairs) throws IOException {
+        Map<String, PoloniexMarketData> marketData = ((PoloniexMarketDataServiceRaw) rawMarketDataService).getAllPoloniexTickers();
+        Map<CurrencyPair, Ticker> tickers = new HashMap<>();
+        if (marketData == null) {
+            return tickers;
+        }
+        for (CurrencyPair cp : currencyPairs) {
+            PoloniexMarketData data = marketData.get(cp.counter.getCurrencyCode() + "_" + cp.base.getCurrencyCode());
+            if (data != null) {
+                tickers.put(cp, PoloniexAdapters.adaptPoloniexTicker(new PoloniexTicker(data, cp), cp));
+            }
+        }
+        return tickers;
+    }
+}
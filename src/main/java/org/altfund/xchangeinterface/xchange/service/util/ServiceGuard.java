@@ -0,0 +1,178 @@
+package org.altfund.xchangeinterface.xchange.service.util;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.knowm.xchange.exceptions.ExchangeException;
+import org.knowm.xchange.service.account.AccountService;
+import org.knowm.xchange.service.marketdata.MarketDataService;
+import org.knowm.xchange.service.trade.TradeService;
+
+import org.altfund.xchangeinterface.util.CircuitBreaker;
+import org.altfund.xchangeinterface.xchange.service.CircuitBreakerRegistry;
+import org.altfund.xchangeinterface.xchange.service.RateLimiter;
+import org.altfund.xchangeinterface.xchange.service.XChangeDispatcher;
+import org.altfund.xchangeinterface.xchange.service.exceptions.CircuitOpenException;
+
+/**
+ * Wraps the knowm services handed out by the factory in a proxy that checks the circuit
+ * breaker of the exchange and service type and takes rate limit tokens before every remote
+ * call. Calls that never leave the process (Object methods and the create*Params factories)
+ * pass straight through.
+ */
+@Slf4j
+public class ServiceGuard {
+
+    private final RateLimiter rateLimiter;
+    private final CircuitBreakerRegistry circuitBreakers;
+
+    public ServiceGuard(RateLimiter rateLimiter, CircuitBreakerRegistry circuitBreakers) {
+        this.rateLimiter = rateLimiter;
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    /*
+     * Guarded proxy for MarketDataService, TradeService and AccountService, anything else is
+     * returned as is.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T wrap(T service, String exchange, XChangeDispatcher dispatcher) {
+        Class<?> serviceType;
+        if (service instanceof MarketDataService) {
+            serviceType = MarketDataService.class;
+        }
+        else if (service instanceof TradeService) {
+            serviceType = TradeService.class;
+        }
+        else if (service instanceof AccountService) {
+            serviceType = AccountService.class;
+        }
+        else {
+            return service;
+        }
+        return (T) Proxy.newProxyInstance(
+                serviceType.getClassLoader(),
+                new Class<?>[] {serviceType},
+                new Handler(service, exchange, circuitBreakers.get(exchange, dispatcher)));
+    }
+
+    public interface RawCall<T> {
+        T call(Object rawService) throws IOException;
+    }
+
+    /*
+     * The service behind a guarded proxy, for exchange specific raw calls.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T unwrap(Object service) {
+        Handler handler = handler(service);
+        return (T) (handler == null ? service : handler.target);
+    }
+
+    /*
+     * Runs an exchange specific call on the service behind a guarded proxy, under the same
+     * circuit breaker and rate limit as the proxied methods. endpoint names the call for the
+     * per-endpoint weights.
+     */
+    public static <T> T call(Object service, String endpoint, RawCall<T> rawCall) throws IOException {
+        Handler handler = handler(service);
+        try {
+            if (handler == null) {
+                return rawCall.call(service);
+            }
+            return handler.guarded(endpoint, () -> rawCall.call(handler.target));
+        }
+        catch (IOException | RuntimeException | Error ex) {
+            throw ex;
+        }
+        catch (Throwable t) {
+            throw new ExchangeException(t.getMessage(), t);
+        }
+    }
+
+    private static Handler handler(Object service) {
+        if (service != null && Proxy.isProxyClass(service.getClass())
+                && Proxy.getInvocationHandler(service) instanceof Handler) {
+            return (Handler) Proxy.getInvocationHandler(service);
+        }
+        return null;
+    }
+
+    private interface GuardedCall {
+        Object call() throws Throwable;
+    }
+
+    private class Handler implements InvocationHandler {
+
+        private final Object target;
+        private final String exchange;
+        private final CircuitBreaker circuitBreaker;
+
+        private Handler(Object target, String exchange, CircuitBreaker circuitBreaker) {
+            this.target = target;
+            this.exchange = exchange;
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class || method.getName().startsWith("create")) {
+                return call(method, args);
+            }
+            return guarded(method.getName(), () -> call(method, args));
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T guarded(String endpoint, GuardedCall guardedCall) throws Throwable {
+            if (!circuitBreaker.tryAcquire()) {
+                throw new CircuitOpenException("Circuit open for " + exchange + ", not calling " + endpoint);
+            }
+            try {
+                rateLimiter.acquire(exchange, endpoint);
+            }
+            catch (RuntimeException ex) {
+                circuitBreaker.onIgnored();
+                throw ex;
+            }
+
+            long start = System.nanoTime();
+            try {
+                Object result = guardedCall.call();
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (elapsedMillis > circuitBreakers.getSlowCallMillis()) {
+                    log.debug("Slow call {} on {} took {} ms.", endpoint, exchange, elapsedMillis);
+                    circuitBreaker.onFailure();
+                }
+                else {
+                    circuitBreaker.onSuccess();
+                }
+                return (T) result;
+            }
+            catch (Throwable t) {
+                if (ExtractExceptions.isOutage(t)) {
+                    circuitBreaker.onFailure();
+                }
+                else {
+                    // the exchange answered, it just rejected this request.
+                    circuitBreaker.onSuccess();
+                }
+                throw t;
+            }
+        }
+
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            }
+            catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.altfund.xchangeinterface.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order;
+import org.knowm.xchange.dto.trade.LimitOrder;
+
+import org.altfund.xchangeinterface.xchange.model.CompactOrderBook;
+import org.altfund.xchangeinterface.xchange.model.LimitOrderExchange;
+
+public class KWayMergeTest {
+
+    private static final CurrencyPair BTC_USD = CurrencyPair.BTC_USD;
+
+    private final KWayMerge kWayMerge = new KWayMerge();
+
+    @Test
+    public void mergeKListsOfNoBooks() {
+        assertTrue(kWayMerge.mergeKLists(new ArrayList<List<LimitOrder>>(), new ArrayList<String>()).isEmpty());
+        assertTrue(kWayMerge.mergeKLists(null, null, 10).isEmpty());
+    }
+
+    @Test
+    public void mergeKListsSkipsEmptyBooksAndKeepsSourceOrderOnTies() {
+        List<List<LimitOrder>> books = Arrays.asList(
+                asks("100", "102"),
+                Collections.<LimitOrder>emptyList(),
+                asks("100", "101"));
+
+        List<LimitOrderExchange> merged = kWayMerge.mergeKLists(books, Arrays.asList("a", "b", "c"), null);
+
+        assertLevels(merged, "a", "100", "c", "100", "c", "101", "a", "102");
+    }
+
+    @Test
+    public void mergeKListsStopsAtTheLimit() {
+        List<List<LimitOrder>> books = Arrays.asList(asks("100", "102", "104"), asks("101", "103"));
+
+        List<LimitOrderExchange> merged = kWayMerge.mergeKLists(books, Arrays.asList("a", "b"), 3);
+
+        assertLevels(merged, "a", "100", "b", "101", "a", "102");
+    }
+
+    @Test
+    public void mergeCompactOfNoBooks() {
+        assertTrue(kWayMerge.mergeCompact(
+                new ArrayList<CompactOrderBook>(), new ArrayList<String>(), Order.OrderType.ASK, null).isEmpty());
+    }
+
+    @Test
+    public void mergeCompactOfEmptyBooks() {
+        List<CompactOrderBook> books = Arrays.asList(book(2), book(4));
+
+        assertTrue(kWayMerge.mergeCompact(books, Arrays.asList("a", "b"), Order.OrderType.ASK, null).isEmpty());
+        assertTrue(kWayMerge.mergeCompact(books, Arrays.asList("a", "b"), Order.OrderType.BID, 5).isEmpty());
+    }
+
+    @Test
+    public void mergeCompactAcrossPriceScales() {
+        // 100.5 at scale 1 and 100.50 at scale 2 tie, the first book wins.
+        List<CompactOrderBook> books = Arrays.asList(
+                book(1, 1005, 1010),
+                book(2),
+                book(2, 10025, 10050, 10075));
+
+        List<LimitOrderExchange> asks = kWayMerge.mergeCompact(books, Arrays.asList("a", "b", "c"), Order.OrderType.ASK, null);
+        assertLevels(asks, "c", "100.25", "a", "100.5", "c", "100.50", "c", "100.75", "a", "101.0");
+
+        List<LimitOrderExchange> bids = kWayMerge.mergeCompact(books, Arrays.asList("a", "b", "c"), Order.OrderType.BID, null);
+        assertLevels(bids, "a", "99.0", "a", "98.5", "c", "98.25");
+    }
+
+    @Test
+    public void mergeCompactStopsAtTheLimit() {
+        List<CompactOrderBook> books = Arrays.asList(book(2, 10000, 10200), book(2, 10100, 10300));
+
+        List<LimitOrderExchange> asks = kWayMerge.mergeCompact(books, Arrays.asList("a", "b"), Order.OrderType.ASK, 3);
+        assertLevels(asks, "a", "100.00", "b", "101.00", "a", "102.00");
+
+        assertTrue(kWayMerge.mergeCompact(books, Arrays.asList("a", "b"), Order.OrderType.ASK, 0).isEmpty());
+    }
+
+    @Test
+    public void mergeCompactOfPricesThatOverflowWhenRescaled() {
+        // Long.MAX_VALUE / 10 at scale 1 does not fit a long at scale 3.
+        List<CompactOrderBook> books = Arrays.asList(
+                book(1, Long.MAX_VALUE / 10),
+                book(3, 1, Long.MAX_VALUE));
+
+        List<LimitOrderExchange> asks = kWayMerge.mergeCompact(books, Arrays.asList("a", "b"), Order.OrderType.ASK, null);
+        assertEquals("b", asks.get(0).getExchange());
+        assertEquals("b", asks.get(1).getExchange());
+        assertEquals("a", asks.get(2).getExchange());
+    }
+
+    private static List<LimitOrder> asks(String... prices) {
+        List<LimitOrder> orders = new ArrayList<>();
+        for (String price : prices) {
+            orders.add(new LimitOrder(Order.OrderType.ASK, BigDecimal.ONE, BTC_USD, null, null, new BigDecimal(price)));
+        }
+        return orders;
+    }
+
+    /*
+     * Compact book with the given ask prices, scaled by priceScale, and amounts of 1. Its bids
+     * are 99.0 and 98.5 at scale 1, 98.25 at any other scale and none without asks.
+     */
+    private static CompactOrderBook book(int priceScale, long... askPrices) {
+        long[] amounts = new long[askPrices.length];
+        Arrays.fill(amounts, 1);
+        long[] bidPrices;
+        if (askPrices.length == 0) {
+            bidPrices = new long[0];
+        }
+        else if (priceScale == 1) {
+            bidPrices = new long[] {990, 985};
+        }
+        else {
+            bidPrices = new long[] {9825};
+        }
+        long[] bidAmounts = new long[bidPrices.length];
+        Arrays.fill(bidAmounts, 1);
+        return new CompactOrderBook(BTC_USD, new Date(), priceScale, 0,
+                new CompactOrderBook.ArraySide(Order.OrderType.ASK, askPrices, amounts),
+                new CompactOrderBook.ArraySide(Order.OrderType.BID, bidPrices, bidAmounts));
+    }
+
+    /*
+     * levels as exchange, price pairs, prices compared with their scale.
+     */
+    private static void assertLevels(List<LimitOrderExchange> merged, String... levels) {
+        assertEquals(levels.length / 2, merged.size());
+        for (int i = 0; i < merged.size(); i++) {
+            assertEquals(levels[2 * i], merged.get(i).getExchange());
+            assertEquals(new BigDecimal(levels[2 * i + 1]), merged.get(i).getLimitOrder().getLimitPrice());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.altfund.xchangeinterface.xchange.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order;
+import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.trade.LimitOrder;
+
+public class CompactOrderBookTest {
+
+    private static final CurrencyPair BTC_USD = CurrencyPair.BTC_USD;
+
+    @Test
+    public void keepsFinerValuesUpToTheExtraScale() {
+        CompactOrderBook book = CompactOrderBook.from(book("100.12345", "99.5", "0.123456"), BTC_USD, 2, 2);
+
+        assertEquals(5, book.getPriceScale());
+        assertEquals(6, book.getAmountScale());
+        assertEquals(new BigDecimal("100.12345"), book.price(book.getAsks().getPrice(0)));
+        assertEquals(new BigDecimal("99.50000"), book.price(book.getBids().getPrice(0)));
+        assertEquals(new BigDecimal("0.123456"), book.amount(book.getAsks().getAmount(0)));
+    }
+
+    @Test
+    public void roundsBeyondTheExtraScaleAwayFromTheSpread() {
+        // 40 decimals do not fit a long unscaled.
+        String threes = String.join("", Collections.nCopies(40, "3"));
+        CompactOrderBook book = CompactOrderBook.from(book("100." + threes, "99." + threes, "0." + threes), BTC_USD, 2, 8);
+
+        assertEquals(6, book.getPriceScale());
+        assertEquals(12, book.getAmountScale());
+        assertEquals(new BigDecimal("100.333334"), book.price(book.getAsks().getPrice(0)));
+        assertEquals(new BigDecimal("99.333333"), book.price(book.getBids().getPrice(0)));
+        assertEquals(new BigDecimal("0.333333333333"), book.amount(book.getBids().getAmount(0)));
+    }
+
+    private static OrderBook book(String ask, String bid, String amount) {
+        return new OrderBook(new Date(), orders(Order.OrderType.ASK, ask, amount), orders(Order.OrderType.BID, bid, amount));
+    }
+
+    private static List<LimitOrder> orders(Order.OrderType type, String price, String amount) {
+        return Collections.singletonList(new LimitOrder(type, new BigDecimal(amount), BTC_USD, null, null, new BigDecimal(price)));
+    }
+}
@@ -0,0 +1,67 @@
+package org.altfund.xchangeinterface.xchange.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.knowm.xchange.currency.Currency;
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.meta.CurrencyMetaData;
+import org.knowm.xchange.dto.meta.CurrencyPairMetaData;
+import org.knowm.xchange.dto.meta.ExchangeMetaData;
+import org.knowm.xchange.dto.meta.RateLimit;
+
+public class ExchangeMetaDataSnapshotTest {
+
+    @Test
+    public void sharesNothingWithTheMetaDataItWasTakenFrom() {
+        Map<CurrencyPair, CurrencyPairMetaData> pairs = new HashMap<>();
+        pairs.put(CurrencyPair.BTC_USD, new CurrencyPairMetaData(null, BigDecimal.ONE, null, 2));
+        RateLimit[] rateLimits = {new RateLimit(10, 1, TimeUnit.SECONDS)};
+        ExchangeMetaData metaData = new ExchangeMetaData(pairs, new HashMap<Currency, CurrencyMetaData>(), rateLimits, null, false);
+        List<CurrencyPair> symbols = new ArrayList<>();
+        symbols.add(CurrencyPair.BTC_USD);
+
+        ExchangeMetaDataSnapshot snapshot = new ExchangeMetaDataSnapshot("kraken", metaData, symbols, 1L);
+        metaData.getCurrencyPairs().put(CurrencyPair.ETH_USD, new CurrencyPairMetaData(null, null, null, 2));
+        rateLimits[0].calls = 1;
+        symbols.clear();
+
+        assertEquals(1, snapshot.getCurrencyPairs().size());
+        assertEquals(1, snapshot.getExchangeSymbols().size());
+        assertEquals(10, snapshot.getExchangeMetaData().getPublicRateLimits()[0].calls);
+    }
+
+    @Test
+    public void handsOutANewExchangeMetaDataEveryTime() {
+        Map<CurrencyPair, CurrencyPairMetaData> pairs = new HashMap<>();
+        pairs.put(CurrencyPair.BTC_USD, new CurrencyPairMetaData(null, BigDecimal.ONE, null, 2));
+        ExchangeMetaDataSnapshot snapshot = new ExchangeMetaDataSnapshot(
+                "kraken", new ExchangeMetaData(pairs, null, null, null, false), null, 1L);
+
+        ExchangeMetaData copy = snapshot.getExchangeMetaData();
+        copy.getCurrencyPairs().clear();
+
+        assertNotSame(copy, snapshot.getExchangeMetaData());
+        assertEquals(1, snapshot.getExchangeMetaData().getCurrencyPairs().size());
+        assertTrue(snapshot.getCurrencies().isEmpty());
+        assertTrue(snapshot.getExchangeSymbols().isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void symbolsAreUnmodifiable() {
+        List<CurrencyPair> symbols = new ArrayList<>();
+        symbols.add(CurrencyPair.BTC_USD);
+        new ExchangeMetaDataSnapshot("kraken", new ExchangeMetaData(null, null, null, null, false), symbols, 1L)
+                .getExchangeSymbols().clear();
+    }
+}
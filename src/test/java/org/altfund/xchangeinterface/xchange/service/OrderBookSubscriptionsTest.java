@@ -0,0 +1,111 @@
+package org.altfund.xchangeinterface.xchange.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.mock.env.MockEnvironment;
+
+import org.knowm.xchange.currency.Currency;
+import org.knowm.xchange.currency.CurrencyPair;
+
+import org.altfund.xchangeinterface.util.JsonHelper;
+import org.altfund.xchangeinterface.xchange.model.Exchange;
+import org.altfund.xchangeinterface.xchange.service.exceptions.XChangeServiceException;
+import org.altfund.xchangeinterface.xchange.service.stream.StreamingOrderBooks;
+import org.altfund.xchangeinterface.xchange.service.util.ExchangeScale;
+
+public class OrderBookSubscriptionsTest {
+
+    private static final int MAX = 3;
+
+    private OrderBookSubscriptions subscriptions;
+    private final JsonHelper jh = new JsonHelper(JsonNodeFactory.instance, new ObjectMapper());
+
+    @Before
+    public void setUp() {
+        ExchangeCatalog exchangeCatalog = mock(ExchangeCatalog.class);
+        when(exchangeCatalog.resolve(anyString())).thenReturn(Optional.of(Exchange.values()[0]));
+        when(exchangeCatalog.isAvailable(any(Exchange.class))).thenReturn(true);
+        when(exchangeCatalog.canonicalName(anyString())).thenAnswer((InvocationOnMock invocation) -> invocation.getArguments()[0]);
+
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("xchange.subscription.max", String.valueOf(MAX))
+            .withProperty("xchange.subscription.interval-ms", "60000");
+        subscriptions = new OrderBookSubscriptions(
+                environment,
+                mock(XChangeFactory.class),
+                exchangeCatalog,
+                mock(MarketDataFetcher.class),
+                mock(StreamingOrderBooks.class),
+                new OffHeapOrderBookStore(environment),
+                mock(ExchangeScale.class));
+    }
+
+    @After
+    public void tearDown() {
+        subscriptions.destroy();
+    }
+
+    @Test
+    public void concurrentSubscribesStayWithinMax() throws Exception {
+        int markets = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(markets);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < markets; i++) {
+                CurrencyPair cp = new CurrencyPair(Currency.getInstance("C" + i), Currency.USD);
+                results.add(executor.submit((Callable<Boolean>) () -> {
+                    start.await();
+                    try {
+                        subscriptions.subscribe("kraken", cp, jh);
+                        return true;
+                    }
+                    catch (XChangeServiceException ex) {
+                        rejected.incrementAndGet();
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            int subscribed = 0;
+            for (Future<Boolean> result : results) {
+                subscribed += result.get() ? 1 : 0;
+            }
+            assertEquals(MAX, subscribed);
+            assertEquals(markets - MAX, rejected.get());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void renewingDoesNotTakeASlot() throws Exception {
+        for (int i = 0; i < MAX; i++) {
+            subscriptions.subscribe("kraken", CurrencyPair.BTC_USD, jh);
+        }
+        subscriptions.subscribe("kraken", CurrencyPair.ETH_USD, jh);
+        subscriptions.subscribe("kraken", CurrencyPair.LTC_USD, jh);
+    }
+}
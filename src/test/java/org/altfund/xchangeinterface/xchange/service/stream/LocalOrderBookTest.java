@@ -0,0 +1,123 @@
+package org.altfund.xchangeinterface.xchange.service.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order;
+import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.trade.LimitOrder;
+
+import org.altfund.xchangeinterface.xchange.model.LevelUpdate;
+
+public class LocalOrderBookTest {
+
+    private static final CurrencyPair BTC_USD = CurrencyPair.BTC_USD;
+
+    @Test
+    public void replaysUpdatesBufferedWhileTheSnapshotWasFetched() {
+        LocalOrderBook book = new LocalOrderBook(BTC_USD);
+        assertTrue(book.beginResync());
+        assertTrue(book.apply(update(7, Order.OrderType.BID, "99", "5")));
+        assertTrue(book.apply(update(8, Order.OrderType.ASK, "101", "0")));
+
+        assertTrue(book.reset(snapshot()));
+
+        OrderBook synced = book.snapshot().getValue();
+        assertLevels(synced.getAsks(), "102", "1");
+        assertLevels(synced.getBids(), "99", "5", "98", "1");
+    }
+
+    @Test
+    public void continuesFromTheLastReplayedSequence() {
+        LocalOrderBook book = new LocalOrderBook(BTC_USD);
+        book.beginResync();
+        book.apply(update(7, Order.OrderType.BID, "99", "5"));
+        book.reset(snapshot());
+
+        // 8 is missing, the buffered update set the baseline.
+        assertFalse(book.apply(update(9, Order.OrderType.BID, "99", "6")));
+        assertFalse(book.isSynced());
+        assertNull(book.snapshot());
+    }
+
+    @Test
+    public void gapResyncsWithTheUpdateThatRevealedIt() {
+        LocalOrderBook book = new LocalOrderBook(BTC_USD);
+        book.beginResync();
+        book.reset(snapshot());
+        assertTrue(book.apply(update(1, Order.OrderType.BID, "99", "2")));
+
+        assertFalse(book.apply(update(3, Order.OrderType.BID, "97", "4")));
+        assertTrue(book.beginResync());
+        assertTrue(book.apply(update(4, Order.OrderType.ASK, "101", "3")));
+        assertTrue(book.reset(snapshot()));
+
+        OrderBook synced = book.snapshot().getValue();
+        assertLevels(synced.getAsks(), "101", "3", "102", "1");
+        assertLevels(synced.getBids(), "99", "1", "98", "1", "97", "4");
+        assertTrue(book.apply(update(5, Order.OrderType.ASK, "101", "0")));
+    }
+
+    @Test
+    public void rejectsASnapshotThatMayPredateTheBuffer() {
+        LocalOrderBook book = new LocalOrderBook(BTC_USD);
+        book.beginResync();
+        book.apply(update(1, Order.OrderType.BID, "99", "2"));
+        // 2 was lost while the snapshot was in flight.
+        book.apply(update(3, Order.OrderType.BID, "97", "4"));
+
+        assertFalse(book.reset(snapshot()));
+        assertNull(book.snapshot());
+
+        assertTrue(book.beginResync());
+        assertTrue(book.reset(snapshot()));
+        assertLevels(book.snapshot().getValue().getBids(), "99", "1", "98", "1", "97", "4");
+    }
+
+    @Test
+    public void dropsBufferedUpdatesOnDisconnect() {
+        LocalOrderBook book = new LocalOrderBook(BTC_USD);
+        book.apply(update(1, Order.OrderType.BID, "97", "4"));
+        book.desync();
+
+        assertTrue(book.beginResync());
+        assertTrue(book.reset(snapshot()));
+        assertLevels(book.snapshot().getValue().getBids(), "99", "1", "98", "1");
+    }
+
+    static LevelUpdate update(long sequence, Order.OrderType side, String price, String amount) {
+        return new LevelUpdate(BTC_USD, sequence, side, new BigDecimal(price), new BigDecimal(amount));
+    }
+
+    static OrderBook snapshot() {
+        return new OrderBook(
+                new Date(),
+                Arrays.asList(order(Order.OrderType.ASK, "101", "1"), order(Order.OrderType.ASK, "102", "1")),
+                Arrays.asList(order(Order.OrderType.BID, "99", "1"), order(Order.OrderType.BID, "98", "1")));
+    }
+
+    static LimitOrder order(Order.OrderType type, String price, String amount) {
+        return new LimitOrder(type, new BigDecimal(amount), BTC_USD, null, null, new BigDecimal(price));
+    }
+
+    /*
+     * levels as price, amount pairs, best first.
+     */
+    static void assertLevels(List<LimitOrder> orders, String... levels) {
+        assertEquals(levels.length / 2, orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            assertEquals(0, new BigDecimal(levels[2 * i]).compareTo(orders.get(i).getLimitPrice()));
+            assertEquals(0, new BigDecimal(levels[2 * i + 1]).compareTo(orders.get(i).getOriginalAmount()));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package org.altfund.xchangeinterface.xchange.service.stream;
+
+import static org.altfund.xchangeinterface.xchange.service.stream.LocalOrderBookTest.assertLevels;
+import static org.altfund.xchangeinterface.xchange.service.stream.LocalOrderBookTest.order;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.Session;
+import javax.websocket.server.ServerContainer;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.server.WsContextListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order;
+import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.trade.LimitOrder;
+import org.knowm.xchange.service.marketdata.MarketDataService;
+
+import org.altfund.xchangeinterface.util.Timestamped;
+import org.altfund.xchangeinterface.xchange.service.ExchangeCatalog;
+import org.altfund.xchangeinterface.xchange.service.XChangeFactory;
+
+/*
+ * StreamingOrderBooks against a fake feed speaking WebSocketStreamingAdapter's protocol on an
+ * embedded Tomcat, with REST snapshots from a mocked MarketDataService.
+ */
+public class StreamingOrderBooksTest {
+
+    private static final CurrencyPair BTC_USD = CurrencyPair.BTC_USD;
+
+    private Tomcat tomcat;
+    private MarketDataService marketDataService;
+    private StreamingOrderBooks streamingOrderBooks;
+
+    public static class FakeFeed extends Endpoint {
+        static final BlockingQueue<Session> sessions = new LinkedBlockingQueue<>();
+        static final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    received.add(message);
+                }
+            });
+            sessions.add(session);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        FakeFeed.sessions.clear();
+        FakeFeed.received.clear();
+
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("fake-feed").toString());
+        tomcat.setPort(0);
+        Context context = tomcat.addContext("", null);
+        context.addApplicationListener(WsContextListener.class.getName());
+        tomcat.start();
+        ServerContainer container = (ServerContainer) context.getServletContext().getAttribute(ServerContainer.class.getName());
+        container.addEndpoint(ServerEndpointConfig.Builder.create(FakeFeed.class, "/feed").build());
+
+        marketDataService = mock(MarketDataService.class);
+        XChangeFactory xChangeFactory = mock(XChangeFactory.class);
+        when(xChangeFactory.getMarketDataService("kraken")).thenReturn(marketDataService);
+
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("xchange.stream.kraken.url", "ws://localhost:" + tomcat.getConnector().getLocalPort() + "/feed")
+            .withProperty("xchange.stream.reconnect-ms", "200");
+        streamingOrderBooks = new StreamingOrderBooks(environment, xChangeFactory, new ExchangeCatalog());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        streamingOrderBooks.destroy();
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    @Test
+    public void syncsFromSnapshotAppliesUpdatesAndResyncsAfterAGap() throws Exception {
+        when(marketDataService.getOrderBook(eq(BTC_USD), anyVararg())).thenReturn(
+                book(new String[] {"101", "1", "102", "1"}, new String[] {"99", "1", "98", "1"}),
+                book(new String[] {"103", "1"}, new String[] {"97", "1"}));
+
+        assertTrue(streamingOrderBooks.supports("kraken"));
+        streamingOrderBooks.subscribe("kraken", BTC_USD);
+        Session feed = FakeFeed.sessions.poll(5, TimeUnit.SECONDS);
+        assertNotNull(feed);
+        assertTrue(FakeFeed.received.poll(5, TimeUnit.SECONDS).contains("subscribe"));
+
+        // snapshot
+        await(() -> read() != null);
+        assertLevels(read().getAsks(), "101", "1", "102", "1");
+        assertLevels(read().getBids(), "99", "1", "98", "1");
+
+        // updates
+        feed.getBasicRemote().sendText("[" + update(1, "bid", "99", "2") + "," + update(2, "ask", "101", "0") + "]");
+        await(() -> read() != null && read().getAsks().size() == 1);
+        assertLevels(read().getAsks(), "102", "1");
+        assertLevels(read().getBids(), "99", "2", "98", "1");
+
+        // gap: 3 and 4 never arrive, 5 is replayed on top of the new snapshot
+        feed.getBasicRemote().sendText(update(5, "bid", "98", "3"));
+        verify(marketDataService, timeout(5000).times(2)).getOrderBook(eq(BTC_USD), anyVararg());
+        await(() -> read() != null && read().getAsks().get(0).getLimitPrice().intValue() == 103);
+        assertLevels(read().getAsks(), "103", "1");
+        assertLevels(read().getBids(), "98", "3", "97", "1");
+
+        // resynced
+        feed.getBasicRemote().sendText(update(6, "ask", "104", "2"));
+        await(() -> read() != null && read().getAsks().size() == 2);
+        assertLevels(read().getAsks(), "103", "1", "104", "2");
+    }
+
+    private OrderBook read() {
+        Timestamped<OrderBook> orderBook = streamingOrderBooks.read("kraken", BTC_USD, null);
+        return orderBook == null ? null : orderBook.getValue();
+    }
+
+    private static OrderBook book(String[] asks, String[] bids) {
+        return new OrderBook(new Date(), orders(Order.OrderType.ASK, asks), orders(Order.OrderType.BID, bids));
+    }
+
+    private static List<LimitOrder> orders(Order.OrderType type, String[] levels) {
+        List<LimitOrder> orders = new ArrayList<>();
+        for (int i = 0; i < levels.length; i += 2) {
+            orders.add(order(type, levels[i], levels[i + 1]));
+        }
+        return orders;
+    }
+
+    private static String update(long sequence, String side, String price, String amount) {
+        return String.format("{\"pair\": \"BTC/USD\", \"sequence\": %d, \"side\": \"%s\", \"price\": \"%s\", \"amount\": \"%s\"}",
+                sequence, side, price, amount);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("condition not met in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+}
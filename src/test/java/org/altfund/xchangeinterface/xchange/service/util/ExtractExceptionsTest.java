@@ -0,0 +1,39 @@
+package org.altfund.xchangeinterface.xchange.service.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import org.knowm.xchange.exceptions.ExchangeException;
+
+import org.altfund.xchangeinterface.xchange.model.OrderStatus;
+
+public class ExtractExceptionsTest {
+
+    @Test
+    public void authNonceSignatureAndMetadataErrorsAreStale() {
+        assertTrue(ExtractExceptions.isStaleSession(new ExchangeException("EAPI:Invalid key")));
+        assertTrue(ExtractExceptions.isStaleSession(new ExchangeException("EAPI:Invalid nonce")));
+        assertTrue(ExtractExceptions.isStaleSession(new ExchangeException("Invalid signature")));
+        assertTrue(ExtractExceptions.isStaleSession(new ExchangeException("EQuery:Unknown asset pair")));
+        assertTrue(ExtractExceptions.isStaleSession(new ExchangeException("failed", new IOException("401 Unauthorized"))));
+    }
+
+    @Test
+    public void rejectedRequestsAndOutagesAreNotStale() {
+        assertFalse(ExtractExceptions.isStaleSession(new ExchangeException("EOrder:Insufficient funds")));
+        assertFalse(ExtractExceptions.isStaleSession(new ExchangeException("EOrder:Unknown order")));
+        assertFalse(ExtractExceptions.isStaleSession(new ExchangeException("Order size too small")));
+        assertFalse(ExtractExceptions.isStaleSession(new IOException("Connection reset")));
+        assertFalse(ExtractExceptions.isStaleSession(new ExchangeException((String) null)));
+    }
+
+    @Test
+    public void orderStatusPhrasesKeepTheExchangeMessage() {
+        OrderStatus status = ExtractExceptions.translate(new ExchangeException("EAPI:Invalid nonce"));
+        assertTrue(ExtractExceptions.isStaleSession(status.getOrderStatusPhrase()));
+    }
+}
@@ -0,0 +1,37 @@
+package org.altfund.xchangeinterface.xchange.service.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.altfund.xchangeinterface.xchange.service.exceptions.XChangeServiceException;
+
+public class OrderBookFilterTest {
+
+    @Test
+    public void maxAgeFromStringsAndJsonNumbers() throws Exception {
+        assertNull(OrderBookFilter.maxAge(new HashMap<String, String>()));
+        assertEquals(Long.valueOf(500), OrderBookFilter.maxAge(Collections.singletonMap("max_age", "500")));
+        assertEquals(Long.valueOf(0), OrderBookFilter.maxAge(Collections.singletonMap("max_age", 0)));
+    }
+
+    @Test
+    public void badMaxAgeIsReported() {
+        for (Object maxAge : new Object[] {"abc", "1.5", "-1", ""}) {
+            Map<String, Object> params = Collections.singletonMap("max_age", maxAge);
+            try {
+                OrderBookFilter.maxAge(params);
+                fail("accepted max_age " + maxAge);
+            }
+            catch (XChangeServiceException expected) {
+                assertEquals("max_age must be a whole number of milliseconds, was " + maxAge, expected.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.altfund.xchangeinterface.xchange.service.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order;
+import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.trade.LimitOrder;
+
+/*
+ * The single pass squasher against the list shifting one it replaced: same levels for the
+ * same per order books.
+ */
+public class OrderBookSquasherTest {
+
+    private static final CurrencyPair BTC_USD = CurrencyPair.BTC_USD;
+
+    @Test
+    public void sameLevelsAsListShifting() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            OrderBook book = perOrderBook(random, 1 + random.nextInt(200));
+            OrderBook squashed = OrderBookSquasher.byPrice(book);
+            assertSameLevels(listShifting(book.getAsks()), squashed.getAsks());
+            assertSameLevels(listShifting(book.getBids()), squashed.getBids());
+        }
+    }
+
+    @Test
+    public void singleOrderAndSinglePrice() {
+        List<LimitOrder> one = Collections.singletonList(order(Order.OrderType.ASK, "100", "1"));
+        assertSameLevels(listShifting(one), OrderBookSquasher.bucketAsks(one, null));
+
+        List<LimitOrder> samePrice = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            samePrice.add(order(Order.OrderType.BID, "99.5", "0.1"));
+        }
+        List<LimitOrder> squashed = OrderBookSquasher.bucketBids(samePrice, null);
+        assertSameLevels(listShifting(samePrice), squashed);
+        assertEquals(1, squashed.size());
+        assertEquals(0, new BigDecimal("0.5").compareTo(squashed.get(0).getOriginalAmount()));
+    }
+
+    @Test
+    public void emptySide() {
+        OrderBook book = new OrderBook(new Date(), new ArrayList<>(), Collections.singletonList(order(Order.OrderType.BID, "99", "1")));
+        OrderBook squashed = OrderBookSquasher.byPrice(book);
+        assertTrue(squashed.getAsks().isEmpty());
+        assertSameLevels(listShifting(book.getBids()), squashed.getBids());
+        // the list shifting squasher read index 0 before looking at the size.
+        try {
+            listShifting(book.getAsks());
+            fail("list shifting squashed an empty side");
+        }
+        catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    /*
+     * OrderBookSquasher.aggregateLimitOrders before it was rewritten as a single pass.
+     */
+    private static List<LimitOrder> listShifting(List<LimitOrder> orders) {
+        List<LimitOrder> aggregatedOrders = new ArrayList<LimitOrder>();
+        aggregatedOrders.add(orders.get(0));
+
+        int size = 0;
+        for (int i = 1; i < orders.size(); i++) {
+            aggregatedOrders.add(orders.get(i));
+            size = aggregatedOrders.size();
+
+            if (aggregatedOrders.get(size - 2).getLimitPrice().compareTo(aggregatedOrders.get(size - 1).getLimitPrice()) == 0){
+                aggregatedOrders = combineConsecutivePriceMatch(aggregatedOrders, size - 1);
+            }
+        }
+
+        return aggregatedOrders;
+    }
+
+    private static List<LimitOrder> combineConsecutivePriceMatch(List<LimitOrder> orders, int i) {
+        int firstOrder = i - 1;
+        int secondOrder = i;
+        LimitOrder order1 = orders.get(firstOrder);
+        LimitOrder order2 = orders.get(secondOrder);
+        orders.remove(secondOrder);
+        orders.remove(firstOrder);
+        orders.add(
+                    new LimitOrder.Builder(order1.getType(), order1.getCurrencyPair())
+                    .originalAmount(order1.getOriginalAmount().add(order2.getOriginalAmount()))
+                    .limitPrice(order1.getLimitPrice())
+                    .build()
+                );
+        return orders;
+    }
+
+    /*
+     * Per order book around 100 with several orders per price, asks ascending and bids
+     * descending.
+     */
+    private static OrderBook perOrderBook(Random random, int ordersPerSide) {
+        List<LimitOrder> asks = new ArrayList<>();
+        List<LimitOrder> bids = new ArrayList<>();
+        BigDecimal ask = new BigDecimal("100.01");
+        BigDecimal bid = new BigDecimal("99.99");
+        BigDecimal tick = new BigDecimal("0.01");
+        for (int i = 0; i < ordersPerSide; i++) {
+            if (random.nextInt(3) == 0) {
+                ask = ask.add(tick);
+            }
+            if (random.nextInt(3) == 0) {
+                bid = bid.subtract(tick);
+            }
+            asks.add(order(Order.OrderType.ASK, ask.toPlainString(), amount(random)));
+            bids.add(order(Order.OrderType.BID, bid.toPlainString(), amount(random)));
+        }
+        return new OrderBook(new Date(), asks, bids);
+    }
+
+    private static String amount(Random random) {
+        return BigDecimal.valueOf(1 + random.nextInt(1000), 3).toPlainString();
+    }
+
+    private static LimitOrder order(Order.OrderType type, String price, String amount) {
+        return new LimitOrder(type, new BigDecimal(amount), BTC_USD, null, null, new BigDecimal(price));
+    }
+
+    private static void assertSameLevels(List<LimitOrder> expected, List<LimitOrder> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getType(), actual.get(i).getType());
+            assertEquals(0, expected.get(i).getLimitPrice().compareTo(actual.get(i).getLimitPrice()));
+            assertEquals(0, expected.get(i).getOriginalAmount().compareTo(actual.get(i).getOriginalAmount()));
+        }
+    }
+}